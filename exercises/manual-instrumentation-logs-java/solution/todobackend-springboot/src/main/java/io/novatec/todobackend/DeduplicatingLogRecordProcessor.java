@@ -0,0 +1,119 @@
+package io.novatec.todobackend;
+
+import static io.opentelemetry.api.common.AttributeKey.longKey;
+import static io.opentelemetry.api.common.AttributeKey.stringKey;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.logs.Logger;
+import io.opentelemetry.api.logs.LoggerProvider;
+import io.opentelemetry.api.logs.Severity;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.logs.LogRecordProcessor;
+import io.opentelemetry.sdk.logs.ReadWriteLogRecord;
+import io.opentelemetry.sdk.logs.data.Body;
+import io.opentelemetry.sdk.logs.data.LogRecordData;
+
+/**
+ * Deduplicates and rate limits log records emitted directly through the
+ * OpenTelemetry API, by instrumentation scope, severity, body and attribute
+ * names, before they reach the exporting processors. Structured records keep
+ * their values out of the body, so records that only differ in attribute
+ * values count as repetitions, like parameterized statements do in the turbo
+ * filter; all of them are rate limited. Records from the logback appender were
+ * already filtered by {@link DeduplicatingTurboFilter}. Suppressed records are
+ * reported as summary records of their own scope once a logger provider is
+ * attached with {@link #summarizeTo(LoggerProvider)}.
+ */
+public class DeduplicatingLogRecordProcessor implements LogRecordProcessor {
+
+	static final AttributeKey<Long> SUPPRESSED_COUNT = longKey("log.suppressed.count");
+	static final AttributeKey<String> SUPPRESSED_TEMPLATE = stringKey("log.suppressed.template");
+	static final AttributeKey<String> SUPPRESSED_SCOPE = stringKey("log.suppressed.scope");
+	static final String SUMMARY_SCOPE = DeduplicatingLogRecordProcessor.class.getName();
+
+	private final LogRecordProcessor delegate;
+	private final LogDeduplicator deduplicator;
+	private final ScheduledExecutorService sweeper;
+	private volatile Logger summaryLogger;
+
+	public DeduplicatingLogRecordProcessor(LogRecordProcessor delegate, long windowMillis, int repeatsPerWindow,
+			double ratePerSecond, int maxTemplates) {
+
+		this.delegate = delegate;
+		this.deduplicator = new LogDeduplicator(windowMillis, repeatsPerWindow, ratePerSecond, maxTemplates,
+				this::summarize);
+		this.sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "log-record-dedup-sweeper");
+			thread.setDaemon(true);
+			return thread;
+		});
+		sweeper.scheduleWithFixedDelay(deduplicator::sweep, windowMillis, windowMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * The processor is part of the provider it reports through, so the provider
+	 * can only be handed over after it was built.
+	 */
+	public void summarizeTo(LoggerProvider loggerProvider) {
+		this.summaryLogger = loggerProvider.get(SUMMARY_SCOPE);
+	}
+
+	@Override
+	public void onEmit(Context context, ReadWriteLogRecord logRecord) {
+
+		LogRecordData data = logRecord.toLogRecordData();
+		String scope = data.getInstrumentationScopeInfo().getName();
+		if (SUMMARY_SCOPE.equals(scope) || deduplicator.allow(scope, data.getSeverity(), template(data)))
+			delegate.onEmit(context, logRecord);
+	}
+
+	private static String template(LogRecordData data) {
+
+		Body body = data.getBody();
+		if (body.getType() == Body.Type.EMPTY)
+			return null;
+		if (data.getAttributes().isEmpty())
+			return body.asString();
+
+		// attribute values are free-form, keying on them would make nearly every record a template of its own
+		StringBuilder template = new StringBuilder(body.asString()).append(" [");
+		data.getAttributes().forEach((key, value) -> template.append(key.getKey()).append(','));
+		template.setCharAt(template.length() - 1, ']');
+		return template.toString();
+	}
+
+	private void summarize(LogDeduplicator.Key key, long count, long windowMillis) {
+
+		Logger logger = summaryLogger;
+		if (logger == null)
+			return;
+		logger.logRecordBuilder()
+				.setTimestamp(System.currentTimeMillis(), TimeUnit.MILLISECONDS)
+				.setSeverity((Severity) key.level())
+				.setBody(key.template() == null ? "rate limit held back records within " + windowMillis + " ms"
+						: "suppressed repetitions within " + windowMillis + " ms")
+				.setAttribute(SUPPRESSED_SCOPE, (String) key.source())
+				.setAttribute(SUPPRESSED_COUNT, count)
+				.setAttribute(SUPPRESSED_TEMPLATE, key.template())
+				.emit();
+	}
+
+	@Override
+	public CompletableResultCode shutdown() {
+
+		sweeper.shutdown();
+		deduplicator.sweep();
+		return delegate.shutdown();
+	}
+
+	@Override
+	public CompletableResultCode forceFlush() {
+		return delegate.forceFlush();
+	}
+
+}
@@ -0,0 +1,97 @@
+package io.novatec.todobackend;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Marker;
+import org.slf4j.MarkerFactory;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+
+/**
+ * Deduplicates and rate limits SLF4J log statements before any appender sees
+ * them, by logger, level and message pattern (the unformatted message, so
+ * parameterized statements with different arguments count as the same).
+ * Suppressed repetitions are reported as one summary statement on the same
+ * logger and level, marked {@code LOG_SUMMARY}.
+ */
+public class DeduplicatingTurboFilter extends TurboFilter {
+
+	static final Marker SUMMARY = MarkerFactory.getMarker("LOG_SUMMARY");
+
+	private long windowMillis = 10_000;
+	private int repeatsPerWindow = 1;
+	private double ratePerSecond = 100;
+	private int maxTemplates = 1000;
+
+	private LogDeduplicator deduplicator;
+	private ScheduledExecutorService sweeper;
+
+	@Override
+	public void start() {
+
+		deduplicator = new LogDeduplicator(windowMillis, repeatsPerWindow, ratePerSecond, maxTemplates,
+				DeduplicatingTurboFilter::summarize);
+		sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "log-dedup-sweeper");
+			thread.setDaemon(true);
+			return thread;
+		});
+		sweeper.scheduleWithFixedDelay(deduplicator::sweep, windowMillis, windowMillis, TimeUnit.MILLISECONDS);
+		super.start();
+	}
+
+	@Override
+	public void stop() {
+
+		super.stop();
+		if (sweeper != null) {
+			sweeper.shutdown();
+			deduplicator.sweep();
+		}
+	}
+
+	@Override
+	public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params,
+			Throwable t) {
+
+		// statements below the logger's level are turned down by logback anyway and must not use up the window
+		if (!isStarted() || format == null || level == null || !level.isGreaterOrEqual(logger.getEffectiveLevel())
+				|| marker == SUMMARY)
+			return FilterReply.NEUTRAL;
+		return deduplicator.allow(logger, level, format) ? FilterReply.NEUTRAL : FilterReply.DENY;
+	}
+
+	private static void summarize(LogDeduplicator.Key key, long count, long windowMillis) {
+
+		Logger logger = (Logger) key.source();
+		org.slf4j.event.Level level = org.slf4j.event.Level.intToLevel(Level.toLocationAwareLoggerInteger((Level) key.level()));
+		if (key.template() == null)
+			logger.atLevel(level).addMarker(SUMMARY)
+					.log("Rate limit held back {} statements within {} ms", count, windowMillis);
+		else
+			logger.atLevel(level).addMarker(SUMMARY)
+					.log("Suppressed {} repetitions of \"{}\" within {} ms", count, key.template(), windowMillis);
+	}
+
+	public void setWindowMillis(long windowMillis) {
+		this.windowMillis = windowMillis;
+	}
+
+	public void setRepeatsPerWindow(int repeatsPerWindow) {
+		this.repeatsPerWindow = repeatsPerWindow;
+	}
+
+	public void setRatePerSecond(double ratePerSecond) {
+		this.ratePerSecond = ratePerSecond;
+	}
+
+	public void setMaxTemplates(int maxTemplates) {
+		this.maxTemplates = maxTemplates;
+	}
+
+}
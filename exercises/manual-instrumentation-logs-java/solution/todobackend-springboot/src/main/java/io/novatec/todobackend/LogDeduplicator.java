@@ -0,0 +1,180 @@
+package io.novatec.todobackend;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides which log records of a repetitive stream are let through. Within a
+ * window only the first {@code repeatsPerWindow} records with the same source,
+ * level and message template pass, and per source and level at most
+ * {@code ratePerSecond} records pass (token bucket with one second of burst).
+ * What was held back is reported to the {@link Summaries} when the window of
+ * the template ends, either on its next record or on {@link #sweep()}.
+ *
+ * At most {@code maxTemplates} templates are tracked. When the table is full,
+ * expired windows are reported and evicted, at most ten times per window so a
+ * stream of new templates does not scan the table on every record; templates
+ * that do not fit are passed through untracked, only rate limited.
+ */
+final class LogDeduplicator {
+
+	record Key(Object source, Object level, String template) {
+	}
+
+	interface Summaries {
+
+		/**
+		 * {@code key.template()} is null for records held back by the rate limit.
+		 */
+		void suppressed(Key key, long count, long windowMillis);
+	}
+
+	private final Map<Key, Window> windows = new ConcurrentHashMap<>();
+	private final Map<Key, Bucket> buckets = new ConcurrentHashMap<>();
+	private final AtomicLong nextEvictionMillis = new AtomicLong();
+	private final long windowMillis;
+	private final int repeatsPerWindow;
+	private final double ratePerSecond;
+	private final int maxTemplates;
+	private final Summaries summaries;
+
+	LogDeduplicator(long windowMillis, int repeatsPerWindow, double ratePerSecond, int maxTemplates,
+			Summaries summaries) {
+
+		this.windowMillis = windowMillis;
+		this.repeatsPerWindow = repeatsPerWindow;
+		this.ratePerSecond = ratePerSecond;
+		this.maxTemplates = maxTemplates;
+		this.summaries = summaries;
+	}
+
+	boolean allow(Object source, Object level, String template) {
+		return allow(source, level, template, System.currentTimeMillis());
+	}
+
+	boolean allow(Object source, Object level, String template, long now) {
+
+		if (template != null) {
+			Key key = new Key(source, level, template);
+			Window window = windows.get(key);
+			if (window == null && windows.size() >= maxTemplates) {
+				long nextEviction = nextEvictionMillis.get();
+				if (now >= nextEviction
+						&& nextEvictionMillis.compareAndSet(nextEviction, now + Math.max(1, windowMillis / 10)))
+					evictExpired(now);
+			}
+			if (window == null && windows.size() < maxTemplates)
+				window = windows.computeIfAbsent(key, k -> new Window(now));
+			if (window != null && !window.allow(key, now))
+				return false;
+		}
+
+		Key bucketKey = new Key(source, level, null);
+		Bucket bucket = buckets.get(bucketKey);
+		if (bucket == null)
+			bucket = buckets.computeIfAbsent(bucketKey, k -> new Bucket(now));
+		return bucket.take(now);
+	}
+
+	/**
+	 * Reports and forgets windows that ended, and reports rate limited
+	 * records. Called periodically so that a burst that stopped is still
+	 * summarized.
+	 */
+	void sweep() {
+		sweep(System.currentTimeMillis());
+	}
+
+	void sweep(long now) {
+
+		evictExpired(now);
+		buckets.forEach((key, bucket) -> {
+			long dropped = bucket.drain();
+			if (dropped > 0)
+				summaries.suppressed(key, dropped, windowMillis);
+		});
+	}
+
+	private void evictExpired(long now) {
+
+		windows.forEach((key, window) -> {
+			long suppressed = window.expire(now);
+			// several threads may evict at once, only the one that removes the window reports it
+			if (suppressed >= 0 && windows.remove(key, window) && suppressed > 0)
+				summaries.suppressed(key, suppressed, windowMillis);
+		});
+	}
+
+	private class Window {
+
+		long start;
+		int passed;
+		long suppressed;
+
+		Window(long start) {
+			this.start = start;
+		}
+
+		boolean allow(Key key, long now) {
+
+			long report;
+			synchronized (this) {
+				if (now - start < windowMillis) {
+					if (passed < repeatsPerWindow) {
+						passed++;
+						return true;
+					}
+					suppressed++;
+					return false;
+				}
+				report = suppressed;
+				start = now;
+				passed = 1;
+				suppressed = 0;
+			}
+			// the summary goes out before the record that opened the new window
+			if (report > 0)
+				summaries.suppressed(key, report, windowMillis);
+			return true;
+		}
+
+		/**
+		 * The suppressed count if the window ended, -1 otherwise.
+		 */
+		synchronized long expire(long now) {
+			return now - start < windowMillis ? -1 : suppressed;
+		}
+	}
+
+	private class Bucket {
+
+		double tokens = ratePerSecond;
+		long refilled;
+		long dropped;
+
+		Bucket(long now) {
+			this.refilled = now;
+		}
+
+		synchronized boolean take(long now) {
+
+			tokens = Math.min(ratePerSecond, tokens + (now - refilled) * ratePerSecond / 1000);
+			refilled = now;
+			if (tokens >= 1) {
+				tokens--;
+				return true;
+			}
+			dropped++;
+			return false;
+		}
+
+		synchronized long drain() {
+
+			long drained = dropped;
+			dropped = 0;
+			return drained;
+		}
+	}
+
+}
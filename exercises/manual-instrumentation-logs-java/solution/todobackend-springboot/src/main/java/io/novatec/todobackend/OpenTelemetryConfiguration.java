@@ -1,15 +1,25 @@
 package io.novatec.todobackend;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
 import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.exporter.logging.LoggingMetricExporter;
 import io.opentelemetry.exporter.logging.LoggingSpanExporter;
 import io.opentelemetry.exporter.logging.SystemOutLogRecordExporter;
+import io.opentelemetry.exporter.otlp.logs.OtlpGrpcLogRecordExporter;
 import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.logs.LogRecordProcessor;
 import io.opentelemetry.sdk.logs.SdkLoggerProvider;
-import io.opentelemetry.sdk.logs.export.SimpleLogRecordProcessor;
+import io.opentelemetry.sdk.logs.export.BatchLogRecordProcessor;
+import io.opentelemetry.sdk.metrics.SdkMeterProvider;
+import io.opentelemetry.sdk.metrics.export.PeriodicMetricReader;
 import io.opentelemetry.sdk.resources.Resource;
 import io.opentelemetry.sdk.trace.SdkTracerProvider;
 import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
 import io.opentelemetry.semconv.ServiceAttributes;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -17,7 +27,16 @@ import org.springframework.context.annotation.Configuration;
 public class OpenTelemetryConfiguration {
 
     @Bean
-    public OpenTelemetry openTelemetry() {
+    public OpenTelemetry openTelemetry(
+            @Value("${otel.exporter.otlp.endpoint}") String otlpEndpoint,
+            @Value("${todobackend.logs.stdout-export:false}") boolean stdoutExport,
+            @Value("${todobackend.logs.batch.max-queue-size:2048}") int maxQueueSize,
+            @Value("${todobackend.logs.batch.max-export-batch-size:512}") int maxExportBatchSize,
+            @Value("${todobackend.logs.batch.schedule-delay-ms:1000}") long scheduleDelayMillis,
+            @Value("${todobackend.logs.dedup.window-ms:10000}") long dedupWindowMillis,
+            @Value("${todobackend.logs.dedup.repeats-per-window:1}") int dedupRepeatsPerWindow,
+            @Value("${todobackend.logs.dedup.rate-per-second:100}") double dedupRatePerSecond,
+            @Value("${todobackend.logs.dedup.max-templates:1000}") int dedupMaxTemplates) {
 
         Resource resource = Resource.getDefault().toBuilder()
                 .put(ServiceAttributes.SERVICE_NAME, "todobackend")
@@ -29,18 +48,46 @@ public class OpenTelemetryConfiguration {
                 .setResource(resource)
                 .build();
 
+        // drop and backlog metrics of the log pipeline
+        SdkMeterProvider sdkMeterProvider = SdkMeterProvider.builder()
+                .registerMetricReader(
+                        PeriodicMetricReader
+                                .builder(LoggingMetricExporter.create())
+                                .setInterval(Duration.ofSeconds(60))
+                                .build())
+                .setResource(resource)
+                .build();
+
+        // log records are exported in batches off the request thread, a full queue drops instead of blocking
+        List<LogRecordProcessor> exporting = new ArrayList<>();
+        exporting.add(
+                BatchLogRecordProcessor.builder(OtlpGrpcLogRecordExporter.builder()
+                                .setEndpoint(otlpEndpoint)
+                                .build())
+                        .setMaxQueueSize(maxQueueSize)
+                        .setMaxExportBatchSize(maxExportBatchSize)
+                        .setScheduleDelay(Duration.ofMillis(scheduleDelayMillis))
+                        .setMeterProvider(sdkMeterProvider)
+                        .build());
+        if (stdoutExport)
+            exporting.add(BatchLogRecordProcessor.builder(SystemOutLogRecordExporter.create()).build());
+
+        // repeated records are summarized before they take up room in the batch queues
+        DeduplicatingLogRecordProcessor deduplicating = new DeduplicatingLogRecordProcessor(
+                LogRecordProcessor.composite(exporting),
+                dedupWindowMillis, dedupRepeatsPerWindow, dedupRatePerSecond, dedupMaxTemplates);
         SdkLoggerProvider sdkLoggerProvider = SdkLoggerProvider.builder()
-                .addLogRecordProcessor(
-                        SimpleLogRecordProcessor.create(SystemOutLogRecordExporter.create())
-                )
+                .addLogRecordProcessor(deduplicating)
                 .setResource(resource)
                 .build();
+        deduplicating.summarizeTo(sdkLoggerProvider);
 
         OpenTelemetry openTelemetry = OpenTelemetrySdk.builder()
                 .setTracerProvider(sdkTracerProvider)
+                .setMeterProvider(sdkMeterProvider)
                 .setLoggerProvider(sdkLoggerProvider)
                 .build();
 
         return openTelemetry;
     }
-}
\ No newline at end of file
+}
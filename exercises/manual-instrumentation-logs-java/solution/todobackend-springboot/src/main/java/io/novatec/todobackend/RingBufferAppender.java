@@ -0,0 +1,300 @@
+package io.novatec.todobackend;
+
+import static io.opentelemetry.api.common.AttributeKey.stringKey;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.LoggerFactory;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.UnsynchronizedAppenderBase;
+import ch.qos.logback.core.spi.AppenderAttachable;
+import ch.qos.logback.core.spi.AppenderAttachableImpl;
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.Meter;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.Scope;
+import io.opentelemetry.instrumentation.logback.appender.v1_0.OpenTelemetryAppender;
+
+/**
+ * Hands log events over to a single worker thread through a bounded lock-free
+ * ring buffer, so that slow appenders behind it (the OpenTelemetry appender
+ * and its exporters) never run on the request thread. The OpenTelemetry
+ * context of the logging thread travels with the event, which keeps logs
+ * correlated with the active span.
+ *
+ * When less than {@code discardingThreshold} slots are free, events at
+ * {@code discardLevel} and below are dropped. When the buffer is full, events
+ * at {@code neverDropLevel} and above wait up to {@code maxBlockMillis} for a
+ * slot, all others are dropped. Drops and backlog are exported as metrics
+ * once {@link #install(OpenTelemetry)} was called.
+ */
+public class RingBufferAppender extends UnsynchronizedAppenderBase<ILoggingEvent>
+		implements AppenderAttachable<ILoggingEvent> {
+
+	static final AttributeKey<String> APPENDER = stringKey("todobackend.logs.appender");
+	static final AttributeKey<String> LEVEL = stringKey("todobackend.logs.level");
+
+	static final Map<String, RingBufferAppender> INSTANCES = new ConcurrentHashMap<>();
+
+	private final AppenderAttachableImpl<ILoggingEvent> appenders = new AppenderAttachableImpl<>();
+	final Map<Level, LongAdder> dropped = new ConcurrentHashMap<>();
+
+	private int queueSize = 8192;
+	private int discardingThreshold = -1;
+	private Level discardLevel = Level.INFO;
+	private Level neverDropLevel = Level.ERROR;
+	private long maxBlockMillis = 100;
+	private long maxFlushMillis = 1000;
+
+	private int mask;
+	private AtomicReferenceArray<Entry> slots;
+	private AtomicLongArray sequences;
+	private final AtomicLong tail = new AtomicLong();
+	private volatile long head;
+	private volatile boolean sleeping;
+	private Thread worker;
+
+	private record Entry(ILoggingEvent event, Context context) {
+	}
+
+	/**
+	 * Hands the SDK to OpenTelemetry appenders nested in ring buffer appenders,
+	 * which {@link OpenTelemetryAppender#install(OpenTelemetry)} does not find,
+	 * and registers the drop and backlog metrics.
+	 */
+	public static void install(OpenTelemetry openTelemetry) {
+
+		if (LoggerFactory.getILoggerFactory() instanceof LoggerContext loggerContext)
+			for (ch.qos.logback.classic.Logger logger : loggerContext.getLoggerList())
+				logger.iteratorForAppenders().forEachRemaining(appender -> {
+					if (appender instanceof RingBufferAppender ringBuffer)
+						ringBuffer.iteratorForAppenders().forEachRemaining(nested -> {
+							if (nested instanceof OpenTelemetryAppender otel)
+								otel.setOpenTelemetry(openTelemetry);
+						});
+				});
+
+		Meter meter = openTelemetry.getMeter(RingBufferAppender.class.getName());
+		meter.upDownCounterBuilder("todobackend.logs.buffer.backlog")
+				.setDescription("Log events waiting in the ring buffer")
+				.setUnit("{event}")
+				.buildWithCallback(measurement -> INSTANCES.forEach((name, appender) -> measurement
+						.record(appender.backlog(), Attributes.of(APPENDER, name))));
+		meter.upDownCounterBuilder("todobackend.logs.buffer.capacity")
+				.setDescription("Size of the ring buffer")
+				.setUnit("{event}")
+				.buildWithCallback(measurement -> INSTANCES.forEach((name, appender) -> measurement
+						.record(appender.capacity(), Attributes.of(APPENDER, name))));
+		meter.counterBuilder("todobackend.logs.dropped")
+				.setDescription("Log events dropped because the ring buffer was (nearly) full")
+				.setUnit("{event}")
+				.buildWithCallback(measurement -> INSTANCES.forEach((name, appender) -> appender.dropped
+						.forEach((level, count) -> measurement.record(count.sum(),
+								Attributes.of(APPENDER, name, LEVEL, level.toString())))));
+	}
+
+	@Override
+	public void start() {
+
+		if (!appenders.iteratorForAppenders().hasNext()) {
+			addError("No appender attached to " + getName());
+			return;
+		}
+		int capacity = Integer.highestOneBit(Math.max(2, queueSize - 1) << 1);
+		mask = capacity - 1;
+		slots = new AtomicReferenceArray<>(capacity);
+		sequences = new AtomicLongArray(capacity);
+		for (int i = 0; i < capacity; i++)
+			sequences.set(i, i);
+		if (discardingThreshold < 0)
+			discardingThreshold = capacity / 5;
+
+		worker = new Thread(this::drain, "log-ring-buffer-" + getName());
+		worker.setDaemon(true);
+		super.start();
+		worker.start();
+		INSTANCES.put(getName(), this);
+	}
+
+	@Override
+	public void stop() {
+
+		if (!isStarted())
+			return;
+		super.stop();
+		INSTANCES.remove(getName(), this);
+		LockSupport.unpark(worker);
+		try {
+			worker.join(maxFlushMillis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if (backlog() > 0)
+			addWarn(backlog() + " log events were still queued when " + getName() + " stopped");
+		appenders.detachAndStopAllAppenders();
+	}
+
+	@Override
+	protected void append(ILoggingEvent event) {
+
+		Level level = event.getLevel();
+		int free = (int) (mask + 1 - backlog());
+		if (free < discardingThreshold && level.toInt() <= discardLevel.toInt()) {
+			drop(level);
+			return;
+		}
+
+		// message, MDC and thread name have to be captured before the event leaves the logging thread
+		event.prepareForDeferredProcessing();
+		Entry entry = new Entry(event, Context.current());
+		if (offer(entry)) {
+			if (sleeping)
+				LockSupport.unpark(worker);
+			return;
+		}
+
+		if (level.isGreaterOrEqual(neverDropLevel)) {
+			long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxBlockMillis);
+			while (System.nanoTime() < deadline) {
+				LockSupport.parkNanos(50_000);
+				if (offer(entry)) {
+					LockSupport.unpark(worker);
+					return;
+				}
+			}
+		}
+		drop(level);
+	}
+
+	private boolean offer(Entry entry) {
+
+		// bounded multi-producer queue after Vyukov: a slot is free when its sequence equals the claimed position
+		while (true) {
+			long position = tail.get();
+			int index = (int) (position & mask);
+			long sequence = sequences.get(index);
+			if (sequence == position) {
+				if (tail.compareAndSet(position, position + 1)) {
+					slots.lazySet(index, entry);
+					sequences.set(index, position + 1);
+					return true;
+				}
+			} else if (sequence < position) {
+				return false;
+			}
+		}
+	}
+
+	private void drain() {
+
+		long position = head;
+		while (true) {
+			int index = (int) (position & mask);
+			if (sequences.get(index) == position + 1) {
+				Entry entry = slots.get(index);
+				slots.lazySet(index, null);
+				sequences.set(index, position + mask + 1);
+				head = ++position;
+				try (Scope scope = entry.context().makeCurrent()) {
+					appenders.appendLoopOnAppenders(entry.event());
+				} catch (RuntimeException e) {
+					addError("Appender failed behind " + getName(), e);
+				}
+			} else if (!isStarted()) {
+				return;
+			} else {
+				// producers only pay for an unpark while the worker is actually asleep
+				sleeping = true;
+				if (sequences.get(index) != position + 1 && isStarted())
+					LockSupport.parkNanos(10_000_000);
+				sleeping = false;
+			}
+		}
+	}
+
+	private void drop(Level level) {
+		dropped.computeIfAbsent(level, l -> new LongAdder()).increment();
+	}
+
+	long backlog() {
+		return tail.get() - head;
+	}
+
+	int capacity() {
+		return mask + 1;
+	}
+
+	public void setQueueSize(int queueSize) {
+		this.queueSize = queueSize;
+	}
+
+	public void setDiscardingThreshold(int discardingThreshold) {
+		this.discardingThreshold = discardingThreshold;
+	}
+
+	public void setDiscardLevel(String discardLevel) {
+		this.discardLevel = Level.toLevel(discardLevel, Level.INFO);
+	}
+
+	public void setNeverDropLevel(String neverDropLevel) {
+		this.neverDropLevel = Level.toLevel(neverDropLevel, Level.ERROR);
+	}
+
+	public void setMaxBlockMillis(long maxBlockMillis) {
+		this.maxBlockMillis = maxBlockMillis;
+	}
+
+	public void setMaxFlushMillis(long maxFlushMillis) {
+		this.maxFlushMillis = maxFlushMillis;
+	}
+
+	@Override
+	public void addAppender(Appender<ILoggingEvent> newAppender) {
+		appenders.addAppender(newAppender);
+	}
+
+	@Override
+	public Iterator<Appender<ILoggingEvent>> iteratorForAppenders() {
+		return appenders.iteratorForAppenders();
+	}
+
+	@Override
+	public Appender<ILoggingEvent> getAppender(String name) {
+		return appenders.getAppender(name);
+	}
+
+	@Override
+	public boolean isAttached(Appender<ILoggingEvent> appender) {
+		return appenders.isAttached(appender);
+	}
+
+	@Override
+	public void detachAndStopAllAppenders() {
+		appenders.detachAndStopAllAppenders();
+	}
+
+	@Override
+	public boolean detachAppender(Appender<ILoggingEvent> appender) {
+		return appenders.detachAppender(appender);
+	}
+
+	@Override
+	public boolean detachAppender(String name) {
+		return appenders.detachAppender(name);
+	}
+
+}
@@ -0,0 +1,140 @@
+package io.novatec.todobackend;
+
+import static io.opentelemetry.api.common.AttributeKey.longKey;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.logs.LogRecordBuilder;
+import io.opentelemetry.api.logs.Logger;
+import io.opentelemetry.api.logs.Severity;
+
+/**
+ * Structured logging straight into OpenTelemetry log records. The body is the
+ * constant message template, values go into typed attributes, so nothing is
+ * formatted on the calling thread; rendering is left to whoever reads the
+ * record after export. Collections are cut to a maximum size and their full
+ * size is recorded next to them. Trace and span id are taken from the current
+ * context when the record is emitted. Records below the minimum severity cost
+ * neither a builder nor any of their arguments' conversions.
+ *
+ * <pre>
+ * log.info("todos listed").with(TODO_COUNT, todos.size()).withList(TODOS, todos).emit();
+ * </pre>
+ */
+public final class StructuredLogger {
+
+	private static final Map<AttributeKey<?>, AttributeKey<Long>> COUNT_KEYS = new ConcurrentHashMap<>();
+
+	private final Logger logger;
+	private final Severity minimum;
+	private final int maxCollectionSize;
+
+	private StructuredLogger(Logger logger, Severity minimum, int maxCollectionSize) {
+
+		this.logger = logger;
+		this.minimum = minimum;
+		this.maxCollectionSize = maxCollectionSize;
+	}
+
+	public static StructuredLogger create(OpenTelemetry openTelemetry, Class<?> type, Severity minimum,
+			int maxCollectionSize) {
+
+		return new StructuredLogger(openTelemetry.getLogsBridge().get(type.getName()), minimum, maxCollectionSize);
+	}
+
+	public boolean isEnabled(Severity severity) {
+		return severity.getSeverityNumber() >= minimum.getSeverityNumber();
+	}
+
+	public Record debug(String message) {
+		return record(Severity.DEBUG, message);
+	}
+
+	public Record info(String message) {
+		return record(Severity.INFO, message);
+	}
+
+	public Record warn(String message) {
+		return record(Severity.WARN, message);
+	}
+
+	public Record error(String message) {
+		return record(Severity.ERROR, message);
+	}
+
+	private Record record(Severity severity, String message) {
+
+		if (!isEnabled(severity))
+			return Record.DISABLED;
+		LogRecordBuilder builder = logger.logRecordBuilder()
+				.setTimestamp(System.currentTimeMillis(), TimeUnit.MILLISECONDS)
+				.setSeverity(severity)
+				.setSeverityText(severity.name())
+				.setBody(message);
+		return new Record(builder, maxCollectionSize);
+	}
+
+	/**
+	 * A log record being built. Disabled records ignore everything.
+	 */
+	public static class Record {
+
+		static final Record DISABLED = new Record(null, 0);
+
+		private final LogRecordBuilder builder;
+		private final int maxCollectionSize;
+
+		Record(LogRecordBuilder builder, int maxCollectionSize) {
+
+			this.builder = builder;
+			this.maxCollectionSize = maxCollectionSize;
+		}
+
+		public <T> Record with(AttributeKey<T> key, T value) {
+
+			if (builder != null && value != null)
+				builder.setAttribute(key, value);
+			return this;
+		}
+
+		public Record with(AttributeKey<Long> key, long value) {
+
+			if (builder != null)
+				builder.setAttribute(key, value);
+			return this;
+		}
+
+		/**
+		 * The first elements of the collection as strings, plus their total
+		 * number under {@code <key>.count}.
+		 */
+		public Record withList(AttributeKey<List<String>> key, Collection<?> values) {
+
+			if (builder == null || values == null)
+				return this;
+			int size = values.size();
+			List<String> strings = new ArrayList<>(Math.min(size, maxCollectionSize));
+			Iterator<?> iterator = values.iterator();
+			while (iterator.hasNext() && strings.size() < maxCollectionSize)
+				strings.add(String.valueOf(iterator.next()));
+			builder.setAttribute(key, strings);
+			builder.setAttribute(COUNT_KEYS.computeIfAbsent(key, k -> longKey(k.getKey() + ".count")), (long) size);
+			return this;
+		}
+
+		public void emit() {
+
+			if (builder != null)
+				builder.emit();
+		}
+	}
+
+}
@@ -3,15 +3,16 @@ package io.novatec.todobackend;
 import java.lang.management.ManagementFactory;
 import com.sun.management.OperatingSystemMXBean;
 
-import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 
 import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.common.AttributeKey;
 import io.opentelemetry.api.logs.Severity;
 import io.opentelemetry.api.trace.Span;
 import io.opentelemetry.api.trace.Tracer;
 import io.opentelemetry.context.Scope;
+import io.opentelemetry.semconv.HttpAttributes;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -33,6 +34,7 @@ import jakarta.servlet.http.HttpServletResponse;
 
 import io.opentelemetry.instrumentation.logback.appender.v1_0.OpenTelemetryAppender;
 
+import static io.opentelemetry.api.common.AttributeKey.stringArrayKey;
 import static io.opentelemetry.api.common.AttributeKey.stringKey;
 
 @SpringBootApplication
@@ -43,8 +45,11 @@ public class TodobackendApplication {
 
 	private Logger logger = LoggerFactory.getLogger(TodobackendApplication.class);
 
+	static final AttributeKey<String> TODO = stringKey("todo.name");
+	static final AttributeKey<List<String>> TODOS = stringArrayKey("todo.names");
+
 	private Tracer tracer;
-	private io.opentelemetry.api.logs.Logger otelLogger;
+	private StructuredLogger log;
 
 	@Value("${HOSTNAME:not_set}")
 	String hostname;
@@ -56,11 +61,14 @@ public class TodobackendApplication {
 	TodoRepository todoRepository;
 
 	@Autowired
-	public TodobackendApplication(OpenTelemetry openTelemetry) {
+	public TodobackendApplication(OpenTelemetry openTelemetry,
+			@Value("${todobackend.logs.min-severity:INFO}") Severity minSeverity,
+			@Value("${todobackend.logs.max-collection-size:20}") int maxCollectionSize) {
 
 		this.tracer = openTelemetry.getTracer(TodobackendApplication.class.getName(), "0.1.0");
-		this.otelLogger = openTelemetry.getLogsBridge().loggerBuilder(TodobackendApplication.class.getName()).build();
+		this.log = StructuredLogger.create(openTelemetry, TodobackendApplication.class, minSeverity, maxCollectionSize);
 		OpenTelemetryAppender.install(openTelemetry);
+		RingBufferAppender.install(openTelemetry);
 	}
 
 	private String getInstanceId() {
@@ -92,13 +100,9 @@ public class TodobackendApplication {
 		try (Scope scope = span.makeCurrent()) {
 
 			todoRepository.findAll().forEach(todo -> todos.add(todo.getTodo()));
-			logger.info("GET /todos/ " + todos.toString());
-
-			otelLogger.logRecordBuilder()
-					.setAttribute(stringKey("http.request.method"), "GET")
-					.setTimestamp(Instant.now())
-					.setSeverity(Severity.INFO)
-					.setBody("GET /todos/")
+			log.info("GET /todos/")
+					.with(HttpAttributes.HTTP_REQUEST_METHOD, "GET")
+					.withList(TODOS, todos)
 					.emit();
 		} finally {
 			span.end();
@@ -112,7 +116,10 @@ public class TodobackendApplication {
 
 		this.someInternalMethod(todo);
 
-		logger.info("POST /todos/ "+todo.toString());
+		log.info("POST /todos/{todo.name}")
+				.with(HttpAttributes.HTTP_REQUEST_METHOD, "POST")
+				.with(TODO, todo)
+				.emit();
 
 		return todo;
 	} 
@@ -130,7 +137,7 @@ public class TodobackendApplication {
 		} 		
 		if(todo.equals("fail")){
 
-			System.out.println("Failing ...");
+			logger.warn("Failing ...");
 			throw new RuntimeException();
 		} 
 
@@ -152,7 +159,10 @@ public class TodobackendApplication {
 	String removeTodo(@PathVariable String todo) {
 
 		todoRepository.deleteById(todo);
-		logger.info("DELETE /todos/ " + todo.toString());
+		log.info("DELETE /todos/{todo.name}")
+				.with(HttpAttributes.HTTP_REQUEST_METHOD, "DELETE")
+				.with(TODO, todo)
+				.emit();
 		return "removed " + todo;
 	}
 
@@ -0,0 +1,107 @@
+package io.novatec.todobackend;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class LogDeduplicatorTests {
+
+	static final long WINDOW = 1000;
+
+	final List<String> summaries = new ArrayList<>();
+
+	@Test
+	void repetitionsWithinTheWindowAreSummarizedWhenTheNextWindowStarts() {
+
+		LogDeduplicator deduplicator = deduplicator(1, 1000);
+
+		assertThat(deduplicator.allow("source", "INFO", "todo {} added", 0)).isTrue();
+		for (int i = 1; i <= 3; i++)
+			assertThat(deduplicator.allow("source", "INFO", "todo {} added", i)).isFalse();
+		assertThat(deduplicator.allow("source", "WARN", "todo {} added", 4)).isTrue();
+		assertThat(summaries).isEmpty();
+
+		assertThat(deduplicator.allow("source", "INFO", "todo {} added", WINDOW)).isTrue();
+		assertThat(summaries).containsExactly("todo {} added x3");
+	}
+
+	@Test
+	void sweepSummarizesWindowsThatEndedWithoutAnotherRecord() {
+
+		LogDeduplicator deduplicator = deduplicator(2, 1000);
+
+		for (int i = 0; i < 5; i++)
+			deduplicator.allow("source", "INFO", "todo {} added", i);
+		deduplicator.sweep(WINDOW - 1);
+		assertThat(summaries).isEmpty();
+
+		deduplicator.sweep(WINDOW);
+		assertThat(summaries).containsExactly("todo {} added x3");
+	}
+
+	@Test
+	void rateLimitHoldsBackRecordsOfAllTemplates() {
+
+		LogDeduplicator deduplicator = deduplicator(1, 2);
+
+		assertThat(deduplicator.allow("source", "INFO", "first", 0)).isTrue();
+		assertThat(deduplicator.allow("source", "INFO", "second", 0)).isTrue();
+		assertThat(deduplicator.allow("source", "INFO", "third", 0)).isFalse();
+		assertThat(deduplicator.allow("source", "INFO", null, 500)).isTrue();
+
+		deduplicator.sweep(WINDOW);
+		assertThat(summaries).containsExactly("rate limit x1");
+	}
+
+	@Test
+	void expiredWindowsAreEvictedToMakeRoomForNewTemplates() {
+
+		LogDeduplicator deduplicator = deduplicator(1, 1000, 2);
+
+		deduplicator.allow("source", "INFO", "first", 0);
+		deduplicator.allow("source", "INFO", "first", 1);
+		deduplicator.allow("source", "INFO", "second", 0);
+
+		// the table is full, the third template passes untracked
+		assertThat(deduplicator.allow("source", "INFO", "third", 2)).isTrue();
+		assertThat(deduplicator.allow("source", "INFO", "third", 3)).isTrue();
+
+		assertThat(deduplicator.allow("source", "INFO", "third", WINDOW)).isTrue();
+		assertThat(summaries).containsExactly("first x1");
+		assertThat(deduplicator.allow("source", "INFO", "third", WINDOW + 1)).isFalse();
+	}
+
+	@Test
+	void evictionIsRetriedAtMostTenTimesPerWindow() {
+
+		LogDeduplicator deduplicator = deduplicator(1, 1000, 1);
+
+		deduplicator.allow("source", "INFO", "first", 0);
+		deduplicator.allow("source", "INFO", "first", 1);
+		// nothing has expired yet, the next attempt is due a tenth of a window later
+		assertThat(deduplicator.allow("source", "INFO", "second", WINDOW - 1)).isTrue();
+
+		assertThat(deduplicator.allow("source", "INFO", "second", WINDOW)).isTrue();
+		assertThat(deduplicator.allow("source", "INFO", "second", WINDOW + 1)).isTrue();
+		assertThat(summaries).isEmpty();
+
+		assertThat(deduplicator.allow("source", "INFO", "second", WINDOW + WINDOW / 10)).isTrue();
+		assertThat(summaries).containsExactly("first x1");
+		assertThat(deduplicator.allow("source", "INFO", "second", WINDOW + WINDOW / 10 + 1)).isFalse();
+	}
+
+	private LogDeduplicator deduplicator(int repeatsPerWindow, double ratePerSecond) {
+		return deduplicator(repeatsPerWindow, ratePerSecond, 1000);
+	}
+
+	private LogDeduplicator deduplicator(int repeatsPerWindow, double ratePerSecond, int maxTemplates) {
+
+		return new LogDeduplicator(WINDOW, repeatsPerWindow, ratePerSecond, maxTemplates,
+				(key, count, windowMillis) -> summaries
+						.add((key.template() == null ? "rate limit" : key.template()) + " x" + count));
+	}
+
+}
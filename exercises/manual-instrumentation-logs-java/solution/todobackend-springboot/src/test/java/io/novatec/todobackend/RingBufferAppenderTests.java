@@ -0,0 +1,167 @@
+package io.novatec.todobackend;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.core.AppenderBase;
+
+public class RingBufferAppenderTests {
+
+	final LoggerContext loggerContext = (LoggerContext) LoggerFactory.getILoggerFactory();
+	final Logger logger = loggerContext.getLogger(RingBufferAppenderTests.class);
+	final BlockingAppender nested = new BlockingAppender();
+	final RingBufferAppender appender = new RingBufferAppender();
+
+	RingBufferAppenderTests() {
+
+		nested.setContext(loggerContext);
+		nested.start();
+		appender.setContext(loggerContext);
+		appender.setName("test");
+		appender.addAppender(nested);
+		appender.setQueueSize(4);
+		appender.setMaxBlockMillis(50);
+	}
+
+	@AfterEach
+	void stop() {
+
+		nested.release.countDown();
+		appender.stop();
+	}
+
+	@Test
+	void eventsBelowTheNeverDropLevelAreDroppedWhenTheBufferIsFull() throws Exception {
+
+		appender.setDiscardingThreshold(0);
+		appender.start();
+		fillBuffer();
+
+		append(Level.WARN, "dropped");
+		long start = System.nanoTime();
+		append(Level.ERROR, "waited");
+		long waitedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+		assertThat(appender.dropped.get(Level.WARN).sum()).isEqualTo(1);
+		assertThat(appender.dropped.get(Level.ERROR).sum()).isEqualTo(1);
+		assertThat(waitedMillis).isGreaterThanOrEqualTo(50);
+	}
+
+	@Test
+	void errorsWaitForAFreeSlot() throws Exception {
+
+		appender.setDiscardingThreshold(0);
+		appender.setMaxBlockMillis(5000);
+		appender.start();
+		fillBuffer();
+
+		Thread releaser = new Thread(() -> {
+			sleep(100);
+			nested.release.countDown();
+		});
+		releaser.start();
+		append(Level.ERROR, "waited");
+		releaser.join();
+
+		assertThat(appender.dropped).isEmpty();
+		appender.stop();
+		assertThat(nested.messages).contains("waited");
+	}
+
+	@Test
+	void eventsAtTheDiscardLevelAreDroppedBeforeTheBufferIsFull() throws Exception {
+
+		appender.setDiscardingThreshold(2);
+		appender.start();
+		append(Level.INFO, "taken");
+		assertThat(nested.entered.await(5, TimeUnit.SECONDS)).isTrue();
+		append(Level.INFO, "queued-1");
+		append(Level.INFO, "queued-2");
+		append(Level.INFO, "queued-3");
+
+		// one slot left, below the threshold of two
+		append(Level.DEBUG, "debug");
+		append(Level.INFO, "info");
+		append(Level.WARN, "warn");
+
+		assertThat(appender.dropped.get(Level.DEBUG).sum()).isEqualTo(1);
+		assertThat(appender.dropped.get(Level.INFO).sum()).isEqualTo(1);
+		assertThat(appender.dropped).doesNotContainKey(Level.WARN);
+		assertThat(appender.backlog()).isEqualTo(4);
+	}
+
+	@Test
+	void stopDrainsTheBufferIntoTheNestedAppenders() throws Exception {
+
+		appender.setDiscardingThreshold(0);
+		appender.setMaxFlushMillis(5000);
+		appender.start();
+		fillBuffer();
+
+		nested.release.countDown();
+		appender.stop();
+
+		assertThat(nested.messages).containsExactly("taken", "queued-1", "queued-2", "queued-3", "queued-4");
+		assertThat(nested.isStarted()).isFalse();
+		assertThat(RingBufferAppender.INSTANCES).doesNotContainKey("test");
+	}
+
+	/**
+	 * The worker blocks on the first event, the next four fill the buffer.
+	 */
+	private void fillBuffer() throws InterruptedException {
+
+		append(Level.INFO, "taken");
+		assertThat(nested.entered.await(5, TimeUnit.SECONDS)).isTrue();
+		for (int i = 1; i <= 4; i++)
+			append(Level.INFO, "queued-" + i);
+		assertThat(appender.backlog()).isEqualTo(4);
+		assertThat(appender.dropped).isEmpty();
+	}
+
+	private void append(Level level, String message) {
+		appender.doAppend(new LoggingEvent(Logger.FQCN, logger, level, message, null, null));
+	}
+
+	private static void sleep(long millis) {
+
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	static class BlockingAppender extends AppenderBase<ILoggingEvent> {
+
+		final List<String> messages = new CopyOnWriteArrayList<>();
+		final CountDownLatch entered = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+
+		@Override
+		protected void append(ILoggingEvent event) {
+
+			entered.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			messages.add(event.getFormattedMessage());
+		}
+	}
+
+}
@@ -0,0 +1,116 @@
+package io.novatec.todobackend;
+
+import static io.opentelemetry.api.common.AttributeKey.stringKey;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.stereotype.Component;
+
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.Meter;
+import io.opentelemetry.api.metrics.ObservableLongMeasurement;
+import jakarta.persistence.EntityManagerFactory;
+
+@Component
+public class HibernateMetrics {
+
+	static final AttributeKey<String> REGION = stringKey("hibernate.cache.region");
+	static final AttributeKey<String> RESULT = stringKey("hibernate.cache.result");
+	static final AttributeKey<String> STATUS = stringKey("hibernate.statement.status");
+	static final AttributeKey<String> OPERATION = stringKey("hibernate.entity.operation");
+	static final AttributeKey<String> QUERY = stringKey("db.query.text");
+
+	static final int MAX_QUERY_LENGTH = 256;
+
+	static final String[] CACHE_REGIONS = { SecondLevelCacheConfiguration.TODO_REGION,
+			SecondLevelCacheConfiguration.QUERY_RESULTS_REGION };
+
+	private final Statistics statistics;
+
+	public HibernateMetrics(OpenTelemetry openTelemetry, EntityManagerFactory entityManagerFactory) {
+
+		this.statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+		Meter meter = openTelemetry.getMeter(TodobackendApplication.class.getName());
+
+		// the statistics are only read when the metric reader collects, never on the request path
+		meter.counterBuilder("hibernate.cache.requests")
+				.setDescription("How many second-level and query cache lookups were hits or misses")
+				.setUnit("{request}")
+				.buildWithCallback(this::recordCacheRequests);
+
+		meter.counterBuilder("hibernate.cache.puts")
+				.setDescription("How many entries were put into the second-level and query cache")
+				.setUnit("{put}")
+				.buildWithCallback(this::recordCachePuts);
+
+		meter.counterBuilder("hibernate.query.executions")
+				.setDescription("How many HQL and native queries were executed")
+				.setUnit("{query}")
+				.buildWithCallback(measurement -> measurement.record(statistics.getQueryExecutionCount()));
+
+		meter.counterBuilder("hibernate.statements")
+				.setDescription("How many JDBC statements were prepared or closed")
+				.setUnit("{statement}")
+				.buildWithCallback(measurement -> {
+					measurement.record(statistics.getPrepareStatementCount(), Attributes.of(STATUS, "prepared"));
+					measurement.record(statistics.getCloseStatementCount(), Attributes.of(STATUS, "closed"));
+				});
+
+		meter.counterBuilder("hibernate.entities")
+				.setDescription("How many entities were loaded, inserted, updated or deleted")
+				.setUnit("{entity}")
+				.buildWithCallback(measurement -> {
+					measurement.record(statistics.getEntityLoadCount(), Attributes.of(OPERATION, "load"));
+					measurement.record(statistics.getEntityFetchCount(), Attributes.of(OPERATION, "fetch"));
+					measurement.record(statistics.getEntityInsertCount(), Attributes.of(OPERATION, "insert"));
+					measurement.record(statistics.getEntityUpdateCount(), Attributes.of(OPERATION, "update"));
+					measurement.record(statistics.getEntityDeleteCount(), Attributes.of(OPERATION, "delete"));
+				});
+
+		meter.counterBuilder("hibernate.flushes")
+				.setDescription("How many times a session was flushed")
+				.setUnit("{flush}")
+				.buildWithCallback(measurement -> measurement.record(statistics.getFlushCount()));
+
+		meter.gaugeBuilder("hibernate.query.max_duration")
+				.setDescription("Execution time of the slowest query since startup")
+				.setUnit("ms")
+				.ofLongs()
+				.buildWithCallback(this::recordSlowestQuery);
+	}
+
+	private void recordSlowestQuery(ObservableLongMeasurement measurement) {
+
+		String query = statistics.getQueryExecutionMaxTimeQueryString();
+		if (query == null)
+			return;
+		if (query.length() > MAX_QUERY_LENGTH)
+			query = query.substring(0, MAX_QUERY_LENGTH);
+		measurement.record(statistics.getQueryExecutionMaxTime(), Attributes.of(QUERY, query));
+	}
+
+	private void recordCacheRequests(ObservableLongMeasurement measurement) {
+
+		for (String region : CACHE_REGIONS) {
+			CacheRegionStatistics regionStatistics = statistics.getCacheRegionStatistics(region);
+			if (regionStatistics == null)
+				continue;
+			measurement.record(regionStatistics.getHitCount(), Attributes.of(REGION, region, RESULT, "hit"));
+			measurement.record(regionStatistics.getMissCount(), Attributes.of(REGION, region, RESULT, "miss"));
+		}
+	}
+
+	private void recordCachePuts(ObservableLongMeasurement measurement) {
+
+		for (String region : CACHE_REGIONS) {
+			CacheRegionStatistics regionStatistics = statistics.getCacheRegionStatistics(region);
+			if (regionStatistics != null)
+				measurement.record(regionStatistics.getPutCount(), Attributes.of(REGION, region));
+		}
+	}
+
+}
@@ -0,0 +1,154 @@
+package io.novatec.todobackend;
+
+import static io.opentelemetry.api.common.AttributeKey.stringKey;
+
+import java.util.List;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.DoubleHistogram;
+import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.Meter;
+
+@Configuration
+public class HikariPoolMetrics {
+
+	static final AttributeKey<String> POOL_NAME = stringKey("db.client.connection.pool.name");
+	static final AttributeKey<String> STATE = stringKey("db.client.connection.state");
+
+	// the semantic conventions define the connection times in seconds, with these bucket boundaries
+	static final List<Double> BUCKETS = List.of(0.001, 0.005, 0.01, 0.025, 0.05, 0.075, 0.1, 0.25, 0.5, 0.75, 1.0,
+			2.5, 5.0, 7.5, 10.0);
+
+	// registered before the pool starts, which also keeps Spring Boot from installing its Micrometer tracker
+	@Bean
+	static BeanPostProcessor hikariMetricsTrackerInstaller(ObjectProvider<OpenTelemetry> openTelemetry) {
+
+		return new BeanPostProcessor() {
+
+			@Override
+			public Object postProcessBeforeInitialization(Object bean, String beanName) {
+				if (bean instanceof HikariDataSource dataSource && dataSource.getMetricsTrackerFactory() == null)
+					dataSource.setMetricsTrackerFactory(new OpenTelemetryTrackerFactory(openTelemetry));
+				return bean;
+			}
+		};
+	}
+
+	static class OpenTelemetryTrackerFactory implements MetricsTrackerFactory {
+
+		private final ObjectProvider<OpenTelemetry> openTelemetry;
+
+		OpenTelemetryTrackerFactory(ObjectProvider<OpenTelemetry> openTelemetry) {
+			this.openTelemetry = openTelemetry;
+		}
+
+		@Override
+		public IMetricsTracker create(String poolName, PoolStats poolStats) {
+			return new OpenTelemetryTracker(openTelemetry.getObject(), poolName, poolStats);
+		}
+	}
+
+	static class OpenTelemetryTracker implements IMetricsTracker {
+
+		private final Attributes attributes;
+		private final DoubleHistogram waitTime;
+		private final DoubleHistogram useTime;
+		private final DoubleHistogram createTime;
+		private final LongCounter timeouts;
+		private final List<AutoCloseable> callbacks;
+
+		OpenTelemetryTracker(OpenTelemetry openTelemetry, String poolName, PoolStats poolStats) {
+
+			Meter meter = openTelemetry.getMeter(TodobackendApplication.class.getName());
+			this.attributes = Attributes.of(POOL_NAME, poolName);
+			Attributes idle = attributes.toBuilder().put(STATE, "idle").build();
+			Attributes used = attributes.toBuilder().put(STATE, "used").build();
+
+			// PoolStats caches its values for a second, so collection never contends with the pool
+			callbacks = List.of(
+					meter.upDownCounterBuilder("db.client.connection.count")
+							.setDescription("The number of connections that are currently in the state described by the state attribute")
+							.setUnit("{connection}")
+							.buildWithCallback(measurement -> {
+								measurement.record(poolStats.getIdleConnections(), idle);
+								measurement.record(poolStats.getActiveConnections(), used);
+							}),
+					meter.upDownCounterBuilder("db.client.connection.pending_requests")
+							.setDescription("The number of threads waiting for a connection from the pool")
+							.setUnit("{request}")
+							.buildWithCallback(measurement -> measurement.record(poolStats.getPendingThreads(), attributes)),
+					meter.upDownCounterBuilder("db.client.connection.max")
+							.setDescription("The maximum number of open connections allowed")
+							.setUnit("{connection}")
+							.buildWithCallback(measurement -> measurement.record(poolStats.getMaxConnections(), attributes)),
+					meter.upDownCounterBuilder("db.client.connection.idle.min")
+							.setDescription("The minimum number of idle open connections allowed")
+							.setUnit("{connection}")
+							.buildWithCallback(measurement -> measurement.record(poolStats.getMinConnections(), attributes)));
+
+			waitTime = meter.histogramBuilder("db.client.connection.wait_time")
+					.setDescription("The time it took to obtain a connection from the pool")
+					.setUnit("s")
+					.setExplicitBucketBoundariesAdvice(BUCKETS)
+					.build();
+			useTime = meter.histogramBuilder("db.client.connection.use_time")
+					.setDescription("The time between borrowing a connection and returning it to the pool")
+					.setUnit("s")
+					.setExplicitBucketBoundariesAdvice(BUCKETS)
+					.build();
+			createTime = meter.histogramBuilder("db.client.connection.create_time")
+					.setDescription("The time it took to create a new connection")
+					.setUnit("s")
+					.setExplicitBucketBoundariesAdvice(BUCKETS)
+					.build();
+			timeouts = meter.counterBuilder("db.client.connection.timeouts")
+					.setDescription("The number of connection requests that timed out")
+					.setUnit("{timeout}")
+					.build();
+		}
+
+		@Override
+		public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+			waitTime.record(elapsedAcquiredNanos / 1e9, attributes);
+		}
+
+		@Override
+		public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+			useTime.record(elapsedBorrowedMillis / 1e3, attributes);
+		}
+
+		@Override
+		public void recordConnectionCreatedMillis(long connectionCreatedMillis) {
+			createTime.record(connectionCreatedMillis / 1e3, attributes);
+		}
+
+		@Override
+		public void recordConnectionTimeout() {
+			timeouts.add(1, attributes);
+		}
+
+		@Override
+		public void close() {
+			for (AutoCloseable callback : callbacks) {
+				try {
+					callback.close();
+				} catch (Exception e) {
+					// closing an observable instrument only unregisters its callback
+				}
+			}
+		}
+	}
+
+}
@@ -1,10 +1,29 @@
 package io.novatec.todobackend;
 
 import java.time.Duration;
+import java.util.Collection;
 
 import io.opentelemetry.exporter.logging.LoggingMetricExporter;
+import io.opentelemetry.exporter.otlp.metrics.OtlpGrpcMetricExporter;
+import io.opentelemetry.exporter.prometheus.PrometheusMetricReader;
+import io.opentelemetry.instrumentation.micrometer.v1_5.OpenTelemetryMeterRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.opentelemetry.sdk.metrics.InstrumentType;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.common.export.MemoryMode;
 import io.opentelemetry.sdk.metrics.SdkMeterProvider;
+import io.opentelemetry.sdk.metrics.SdkMeterProviderBuilder;
+import io.opentelemetry.sdk.metrics.ViewBuilder;
+import io.opentelemetry.sdk.metrics.data.AggregationTemporality;
+import io.opentelemetry.sdk.metrics.data.MetricData;
+import io.opentelemetry.sdk.metrics.export.AggregationTemporalitySelector;
+import io.opentelemetry.sdk.metrics.export.MetricExporter;
+import io.opentelemetry.sdk.metrics.export.MetricReader;
 import io.opentelemetry.sdk.metrics.export.PeriodicMetricReader;
+import io.opentelemetry.sdk.metrics.internal.SdkMeterProviderUtil;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -16,41 +35,75 @@ import io.opentelemetry.semconv.ServiceAttributes;
 
 import io.opentelemetry.sdk.metrics.InstrumentSelector;
 import io.opentelemetry.sdk.metrics.View;
-import io.opentelemetry.sdk.metrics.InstrumentType;
 import io.opentelemetry.sdk.metrics.Aggregation;
 
 @Configuration
 public class OpenTelemetryConfiguration {
 
+    // scraped through the prometheus actuator endpoint, without a separate HTTP server or port;
+    // shut down by the meter provider
+    @Bean(destroyMethod = "")
+    @ConditionalOnProperty(name = "todobackend.metrics.prometheus.enabled", matchIfMissing = true)
+    public PrometheusMetricReader prometheusMetricReader() {
+
+        return new PrometheusMetricReader(true, resourceAttribute -> false);
+    }
+
     @Bean
-    public OpenTelemetry openTelemetry() {
+    public OpenTelemetry openTelemetry(ObjectProvider<PrometheusMetricReader> prometheusMetricReader,
+            @Value("${otel.exporter.otlp.endpoint}") String otlpEndpoint,
+            @Value("${todobackend.metrics.otlp.enabled:false}") boolean otlpEnabled,
+            @Value("${todobackend.metrics.otlp.interval-seconds:60}") long otlpIntervalSeconds,
+            @Value("${todobackend.metrics.temporality:cumulative}") String temporality,
+            @Value("${todobackend.metrics.cardinality-limit:2000}") int cardinalityLimit,
+            @Value("${todobackend.metrics.requests-counter.cardinality-limit:500}") int requestsCounterCardinalityLimit) {
 
         Resource resource = Resource.getDefault().toBuilder()
                 .put(ServiceAttributes.SERVICE_NAME, "todobackend")
                 .put(ServiceAttributes.SERVICE_VERSION, "0.1.0")
                 .build();
 
-        SdkMeterProvider sdkMeterProvider = SdkMeterProvider.builder()
-                .registerMetricReader(
-                        PeriodicMetricReader
-                                .builder(LoggingMetricExporter.create())
-                                .setInterval(Duration.ofSeconds(10))
-                                .build())
+        // with delta temporality a reader forgets every series after it was exported, so series that are no
+        // longer recorded do not stay in memory; every reader has storage of its own though, and the Prometheus
+        // reader is always cumulative: while it is enabled it keeps all series, bounded only by the limit
+        AggregationTemporalitySelector temporalitySelector = temporalitySelector(temporality);
+
+        SdkMeterProviderBuilder sdkMeterProviderBuilder = SdkMeterProvider.builder();
+        registerMetricReader(sdkMeterProviderBuilder,
+                PeriodicMetricReader
+                        .builder(withTemporality(LoggingMetricExporter.create(), temporalitySelector))
+                        .setInterval(Duration.ofSeconds(10))
+                        .build(),
+                cardinalityLimit);
+        prometheusMetricReader.ifAvailable(reader -> registerMetricReader(sdkMeterProviderBuilder, reader, cardinalityLimit));
+        if (otlpEnabled)
+            registerMetricReader(sdkMeterProviderBuilder,
+                    PeriodicMetricReader
+                            .builder(OtlpGrpcMetricExporter.builder()
+                                    .setEndpoint(otlpEndpoint)
+                                    .setAggregationTemporalitySelector(temporalitySelector)
+                                    .build())
+                            .setInterval(Duration.ofSeconds(otlpIntervalSeconds))
+                            .build(),
+                    cardinalityLimit);
+
+        // every todo value is a series of its own on the requests counter
+        SdkMeterProvider sdkMeterProvider = sdkMeterProviderBuilder
                 .setResource(resource)
                 .registerView(
                         InstrumentSelector.builder().setName("todobackend.requests.counter").build(),
-                        View.builder().setName("test-view").build() // Rename measurements
+                        withCardinalityLimit(View.builder().setName("test-view"), requestsCounterCardinalityLimit).build() // Rename measurements
                 )
                 .registerView(
                         InstrumentSelector.builder().setName("todobackend.requests.counter").build(),
                         View.builder().setAttributeFilter((attr) -> false).build() // Remove attributes
                 )
                 .registerView(
-                        InstrumentSelector.builder().build(),
+                        InstrumentSelector.builder().setName("*").build(),
                         View.builder().build()
                 )
                 .registerView(
-                        InstrumentSelector.builder().setType(InstrumentType.OBSERVABLE_GAUGE).build(),
+                        InstrumentSelector.builder().setType(InstrumentType.OBSERVABLE_GAUGE).setName("system.cpu.utilization").build(),
                         View.builder().setAggregation(Aggregation.drop()).build() // Drop measurements
                 )
                 .build();
@@ -62,4 +115,73 @@ public class OpenTelemetryConfiguration {
         return openTelemetry;
     }
 
-}
\ No newline at end of file
+    static AggregationTemporalitySelector temporalitySelector(String temporality) {
+
+        return switch (temporality) {
+            case "cumulative" -> AggregationTemporalitySelector.alwaysCumulative();
+            case "delta" -> AggregationTemporalitySelector.deltaPreferred();
+            // delta only for synchronous counters and histograms, which are the instruments that accumulate series
+            case "lowmemory" -> AggregationTemporalitySelector.lowMemory();
+            default -> throw new IllegalArgumentException(
+                    "todobackend.metrics.temporality must be cumulative, delta or lowmemory, not " + temporality);
+        };
+    }
+
+    // the logging exporter takes a single temporality for all instrument types, the selector decides per type
+    private static MetricExporter withTemporality(MetricExporter exporter, AggregationTemporalitySelector selector) {
+
+        return new MetricExporter() {
+
+            @Override
+            public AggregationTemporality getAggregationTemporality(InstrumentType instrumentType) {
+                return selector.getAggregationTemporality(instrumentType);
+            }
+
+            @Override
+            public MemoryMode getMemoryMode() {
+                return exporter.getMemoryMode();
+            }
+
+            @Override
+            public CompletableResultCode export(Collection<MetricData> metrics) {
+                return exporter.export(metrics);
+            }
+
+            @Override
+            public CompletableResultCode flush() {
+                return exporter.flush();
+            }
+
+            @Override
+            public CompletableResultCode shutdown() {
+                return exporter.shutdown();
+            }
+
+            @Override
+            public String toString() {
+                return exporter.toString();
+            }
+        };
+    }
+
+    // series beyond the limit are aggregated into one series with the otel.metric.overflow attribute
+    private static void registerMetricReader(SdkMeterProviderBuilder builder, MetricReader reader, int cardinalityLimit) {
+
+        SdkMeterProviderUtil.registerMetricReaderWithCardinalitySelector(builder, reader, instrumentType -> cardinalityLimit);
+    }
+
+    private static ViewBuilder withCardinalityLimit(ViewBuilder builder, int cardinalityLimit) {
+
+        SdkMeterProviderUtil.setCardinalityLimit(builder, cardinalityLimit);
+        return builder;
+    }
+
+    // the meters Spring Boot binds to Micrometer (HTTP server, JVM, Tomcat, ...) are recorded as OpenTelemetry
+    // instruments of the same SdkMeterProvider; as a MeterRegistry bean it also replaces Boot's own simple registry
+    @Bean
+    public MeterRegistry meterRegistry(OpenTelemetry openTelemetry) {
+
+        return OpenTelemetryMeterRegistry.builder(openTelemetry).build();
+    }
+
+}
@@ -0,0 +1,48 @@
+package io.novatec.todobackend;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.springframework.boot.actuate.endpoint.web.annotation.RestControllerEndpoint;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+
+import io.opentelemetry.exporter.prometheus.PrometheusMetricReader;
+import io.prometheus.metrics.expositionformats.ExpositionFormatWriter;
+import io.prometheus.metrics.expositionformats.ExpositionFormats;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Serves the metrics of the SDK meter provider at {@code /actuator/prometheus}
+ * in the exposition format the scraper asks for: protobuf, OpenMetrics or the
+ * Prometheus text format. The exposition is written metric family by metric
+ * family into the response stream rather than built as one payload first, so
+ * a scrape holds the collected snapshots but never their serialized form.
+ */
+@Component
+@ConditionalOnProperty(name = "todobackend.metrics.prometheus.enabled", matchIfMissing = true)
+@RestControllerEndpoint(id = "prometheus")
+public class PrometheusScrapeEndpoint {
+
+	private final PrometheusMetricReader reader;
+	private final ExpositionFormats formats = ExpositionFormats.init();
+
+	public PrometheusScrapeEndpoint(PrometheusMetricReader reader) {
+		this.reader = reader;
+	}
+
+	@GetMapping
+	public void scrape(@RequestHeader(name = "Accept", required = false) String accept, HttpServletResponse response)
+			throws IOException {
+
+		ExpositionFormatWriter writer = formats.findWriter(accept);
+		response.setContentType(writer.getContentType());
+		try (OutputStream out = new BufferedOutputStream(response.getOutputStream(), 8192)) {
+			writer.write(out, reader.collect());
+		}
+	}
+
+}
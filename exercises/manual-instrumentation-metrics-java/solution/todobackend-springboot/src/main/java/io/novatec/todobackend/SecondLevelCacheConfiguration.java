@@ -0,0 +1,74 @@
+package io.novatec.todobackend;
+
+import java.time.Duration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+
+import org.ehcache.config.builders.CacheConfigurationBuilder;
+import org.ehcache.config.builders.ExpiryPolicyBuilder;
+import org.ehcache.config.builders.ResourcePoolsBuilder;
+import org.ehcache.jsr107.Eh107Configuration;
+import org.ehcache.jsr107.EhcacheCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class SecondLevelCacheConfiguration {
+
+	static final String TODO_REGION = "todo";
+	static final String QUERY_RESULTS_REGION = "default-query-results-region";
+	static final String UPDATE_TIMESTAMPS_REGION = "default-update-timestamps-region";
+
+	@Bean(destroyMethod = "close")
+	public CacheManager hibernateCacheManager(
+			@Value("${todobackend.cache.todo.max-entries:1000}") long todoMaxEntries,
+			@Value("${todobackend.cache.query.max-entries:100}") long queryMaxEntries,
+			@Value("${todobackend.cache.time-to-live-seconds:300}") long timeToLiveSeconds) {
+
+		CachingProvider cachingProvider = Caching.getCachingProvider(EhcacheCachingProvider.class.getName());
+		CacheManager cacheManager = cachingProvider.getCacheManager(cachingProvider.getDefaultURI(),
+				getClass().getClassLoader());
+
+		createCache(cacheManager, TODO_REGION, ResourcePoolsBuilder.heap(todoMaxEntries),
+				Duration.ofSeconds(timeToLiveSeconds));
+		createCache(cacheManager, QUERY_RESULTS_REGION, ResourcePoolsBuilder.heap(queryMaxEntries),
+				Duration.ofSeconds(timeToLiveSeconds));
+		// update timestamps must outlive every cached query result, so they are never expired
+		createCache(cacheManager, UPDATE_TIMESTAMPS_REGION, ResourcePoolsBuilder.heap(100), null);
+
+		return cacheManager;
+	}
+
+	@Bean
+	public HibernatePropertiesCustomizer secondLevelCacheCustomizer(CacheManager hibernateCacheManager) {
+
+		return properties -> {
+			properties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, true);
+			properties.put(AvailableSettings.USE_QUERY_CACHE, true);
+			properties.put(AvailableSettings.CACHE_REGION_FACTORY, "jcache");
+			properties.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+			properties.put(ConfigSettings.MISSING_CACHE_STRATEGY, "fail");
+			properties.put(AvailableSettings.GENERATE_STATISTICS, true);
+		};
+	}
+
+	private void createCache(CacheManager cacheManager, String name, ResourcePoolsBuilder resources, Duration timeToLive) {
+
+		if (cacheManager.getCache(name) != null)
+			cacheManager.destroyCache(name);
+
+		CacheConfigurationBuilder<Object, Object> configuration = CacheConfigurationBuilder
+				.newCacheConfigurationBuilder(Object.class, Object.class, resources);
+		if (timeToLive != null)
+			configuration = configuration.withExpiry(ExpiryPolicyBuilder.timeToLiveExpiration(timeToLive));
+
+		cacheManager.createCache(name, Eh107Configuration.fromEhcacheCacheConfiguration(configuration.build()));
+	}
+
+}
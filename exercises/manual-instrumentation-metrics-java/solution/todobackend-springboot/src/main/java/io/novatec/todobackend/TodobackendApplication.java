@@ -13,10 +13,14 @@ import io.opentelemetry.api.metrics.Meter;
 import io.opentelemetry.api.common.Attributes;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.jpa.AvailableHints;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -25,8 +29,10 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
+import jakarta.persistence.QueryHint;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
@@ -45,6 +51,7 @@ public class TodobackendApplication {
 	private LongCounter errorCounter;
 	private LongHistogram requestDuration;
 	private ObservableDoubleGauge cpuLoad;
+	private final OperatingSystemMXBean osBean = (OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
 
 	@Value("${HOSTNAME:not_set}")
 	String hostname;
@@ -155,7 +162,6 @@ public class TodobackendApplication {
 
 	double getCpuLoad() {
 
-		OperatingSystemMXBean osBean = (OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
 		return osBean.getCpuLoad() * 100;
 	}
 
@@ -174,6 +180,8 @@ public class TodobackendApplication {
 }
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = SecondLevelCacheConfiguration.TODO_REGION)
 class Todo {
 
 	@Id
@@ -198,4 +206,8 @@ class Todo {
 
 interface TodoRepository extends CrudRepository<Todo, String> {
 
+	@Override
+	@QueryHints(@QueryHint(name = AvailableHints.HINT_CACHEABLE, value = "true"))
+	Iterable<Todo> findAll();
+
 }
\ No newline at end of file
@@ -0,0 +1,96 @@
+package io.novatec.todobackend;
+
+import static io.opentelemetry.sdk.testing.assertj.OpenTelemetryAssertions.assertThat;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.zaxxer.hikari.metrics.PoolStats;
+
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.metrics.SdkMeterProvider;
+import io.opentelemetry.sdk.metrics.data.MetricData;
+import io.opentelemetry.sdk.testing.exporter.InMemoryMetricReader;
+
+public class HikariPoolMetricsTests {
+
+	final InMemoryMetricReader metricReader = InMemoryMetricReader.create();
+	final OpenTelemetrySdk openTelemetry = OpenTelemetrySdk.builder()
+			.setMeterProvider(SdkMeterProvider.builder().registerMetricReader(metricReader).build())
+			.build();
+	final Attributes pool = Attributes.of(HikariPoolMetrics.POOL_NAME, "test");
+
+	final PoolStats poolStats = new PoolStats(0) {
+
+		@Override
+		protected void update() {
+
+			totalConnections = 4;
+			idleConnections = 3;
+			activeConnections = 1;
+			pendingThreads = 2;
+			maxConnections = 10;
+			minConnections = 1;
+		}
+	};
+
+	@AfterEach
+	void close() {
+		openTelemetry.close();
+	}
+
+	@Test
+	void connectionTimesAreRecordedInSeconds() {
+
+		HikariPoolMetrics.OpenTelemetryTracker tracker = new HikariPoolMetrics.OpenTelemetryTracker(openTelemetry,
+				"test", poolStats);
+		tracker.recordConnectionAcquiredNanos(2_000_000);
+		tracker.recordConnectionUsageMillis(250);
+		tracker.recordConnectionCreatedMillis(1_500);
+		tracker.recordConnectionTimeout();
+
+		assertThat(metric("db.client.connection.wait_time")).hasUnit("s")
+				.hasHistogramSatisfying(histogram -> histogram.hasPointsSatisfying(
+						point -> point.hasAttributes(pool).hasSum(0.002).hasBucketBoundaries(HikariPoolMetrics.BUCKETS
+								.stream().mapToDouble(Double::doubleValue).toArray())));
+		assertThat(metric("db.client.connection.use_time")).hasUnit("s")
+				.hasHistogramSatisfying(histogram -> histogram.hasPointsSatisfying(point -> point.hasSum(0.25)));
+		assertThat(metric("db.client.connection.create_time")).hasUnit("s")
+				.hasHistogramSatisfying(histogram -> histogram.hasPointsSatisfying(point -> point.hasSum(1.5)));
+		assertThat(metric("db.client.connection.timeouts"))
+				.hasLongSumSatisfying(sum -> sum.hasPointsSatisfying(point -> point.hasValue(1)));
+	}
+
+	@Test
+	void poolStatsAreObservedPerConnectionState() {
+
+		new HikariPoolMetrics.OpenTelemetryTracker(openTelemetry, "test", poolStats);
+
+		assertThat(metric("db.client.connection.count")).hasLongSumSatisfying(sum -> sum.hasPointsSatisfying(
+				point -> point.hasValue(3).hasAttributes(pool.toBuilder().put(HikariPoolMetrics.STATE, "idle").build()),
+				point -> point.hasValue(1).hasAttributes(pool.toBuilder().put(HikariPoolMetrics.STATE, "used").build())));
+		assertThat(metric("db.client.connection.pending_requests"))
+				.hasLongSumSatisfying(sum -> sum.hasPointsSatisfying(point -> point.hasValue(2)));
+		assertThat(metric("db.client.connection.max"))
+				.hasLongSumSatisfying(sum -> sum.hasPointsSatisfying(point -> point.hasValue(10)));
+	}
+
+	@Test
+	void closingTheTrackerUnregistersItsCallbacks() {
+
+		new HikariPoolMetrics.OpenTelemetryTracker(openTelemetry, "test", poolStats).close();
+
+		assertThat(metricReader.collectAllMetrics())
+				.noneMatch(metric -> metric.getName().equals("db.client.connection.count"));
+	}
+
+	private MetricData metric(String name) {
+
+		return metricReader.collectAllMetrics().stream()
+				.filter(metric -> metric.getName().equals(name))
+				.findFirst()
+				.orElseThrow();
+	}
+
+}
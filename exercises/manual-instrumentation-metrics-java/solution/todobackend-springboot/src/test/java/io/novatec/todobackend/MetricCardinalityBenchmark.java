@@ -0,0 +1,136 @@
+package io.novatec.todobackend;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.metrics.InstrumentType;
+import io.opentelemetry.sdk.metrics.SdkMeterProvider;
+import io.opentelemetry.sdk.metrics.SdkMeterProviderBuilder;
+import io.opentelemetry.sdk.metrics.data.AggregationTemporality;
+import io.opentelemetry.sdk.metrics.data.MetricData;
+import io.opentelemetry.sdk.metrics.export.AggregationTemporalitySelector;
+import io.opentelemetry.sdk.metrics.export.MetricExporter;
+import io.opentelemetry.sdk.metrics.export.PeriodicMetricReader;
+import io.opentelemetry.sdk.metrics.internal.SdkMeterProviderUtil;
+
+/**
+ * Heap a long-running counter keeps when its attributes take 100k distinct
+ * values, as the todo attribute of the requests counter does, with
+ * cumulative and delta temporality and with and without a cardinality limit.
+ * The values are recorded in batches of 10k with an export after each batch,
+ * like a periodic reader would between recordings of different todos. Prints
+ * the heap retained after the last export and the series in it. The serial
+ * collector reports the used heap exactly after a full collection.
+ *
+ * Run with:
+ * MAVEN_OPTS=-XX:+UseSerialGC mvn test-compile exec:java -Dexec.mainClass=io.novatec.todobackend.MetricCardinalityBenchmark -Dexec.classpathScope=test
+ */
+public class MetricCardinalityBenchmark {
+
+	static final int DISTINCT = 100_000;
+	static final int BATCH = 10_000;
+	static final int LIMIT = 2000;
+	static final AttributeKey<String> TODO = AttributeKey.stringKey("todo");
+	// the SDK warns about every overflowing limit
+	static final Logger SDK_LOGGER = Logger.getLogger("io.opentelemetry.sdk");
+
+	public static void main(String[] args) throws InterruptedException {
+
+		SDK_LOGGER.setLevel(Level.OFF);
+		System.out.printf("%-12s %8s %14s %16s%n", "temporality", "limit", "retained KB", "exported series");
+		for (int round = 0; round < 3; round++) {
+			run("cumulative", 0);
+			run("cumulative", LIMIT);
+			run("delta", 0);
+			run("delta", LIMIT);
+		}
+	}
+
+	static void run(String temporality, int limit) throws InterruptedException {
+
+		CollectingExporter exporter = new CollectingExporter(
+				OpenTelemetryConfiguration.temporalitySelector(temporality));
+		long heapWithSeries = record(exporter, limit);
+		// the difference to the heap once the meter provider is gone, whatever earlier runs left behind
+		long retained = heapWithSeries - usedAfterGc();
+		System.out.printf("%-12s %8s %14d %16d%n", temporality, limit > 0 ? limit : "none", retained / 1024,
+				exporter.lastSeries);
+	}
+
+	static long record(CollectingExporter exporter, int limit) throws InterruptedException {
+
+		PeriodicMetricReader reader = PeriodicMetricReader.builder(exporter).build();
+		SdkMeterProviderBuilder builder = SdkMeterProvider.builder();
+		// without a selector the SDK falls back to 2000 series
+		int cardinalityLimit = limit > 0 ? limit : Integer.MAX_VALUE;
+		SdkMeterProviderUtil.registerMetricReaderWithCardinalitySelector(builder, reader,
+				instrumentType -> cardinalityLimit);
+		SdkMeterProvider meterProvider = builder.build();
+		LongCounter counter = meterProvider.get("benchmark").counterBuilder("todobackend.requests.counter").build();
+
+		for (int i = 0; i < DISTINCT; i++) {
+			counter.add(1, Attributes.of(TODO, "todo-" + i));
+			if ((i + 1) % BATCH == 0)
+				reader.forceFlush().join(10_000, TimeUnit.MILLISECONDS);
+		}
+
+		long heapWithSeries = usedAfterGc();
+		meterProvider.close();
+		return heapWithSeries;
+	}
+
+	static long usedAfterGc() throws InterruptedException {
+
+		MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		// the reader thread of the previous run ends after its last export
+		Thread.sleep(200);
+		for (int i = 0; i < 3; i++)
+			System.gc();
+		return memory.getHeapMemoryUsage().getUsed();
+	}
+
+	static class CollectingExporter implements MetricExporter {
+
+		private final AggregationTemporalitySelector temporalitySelector;
+		int lastSeries;
+
+		CollectingExporter(AggregationTemporalitySelector temporalitySelector) {
+			this.temporalitySelector = temporalitySelector;
+		}
+
+		@Override
+		public CompletableResultCode export(Collection<MetricData> metrics) {
+
+			List<Object> points = new ArrayList<>();
+			metrics.forEach(metric -> points.addAll(metric.getData().getPoints()));
+			lastSeries = points.size();
+			return CompletableResultCode.ofSuccess();
+		}
+
+		@Override
+		public AggregationTemporality getAggregationTemporality(InstrumentType instrumentType) {
+			return temporalitySelector.getAggregationTemporality(instrumentType);
+		}
+
+		@Override
+		public CompletableResultCode flush() {
+			return CompletableResultCode.ofSuccess();
+		}
+
+		@Override
+		public CompletableResultCode shutdown() {
+			return CompletableResultCode.ofSuccess();
+		}
+	}
+
+}
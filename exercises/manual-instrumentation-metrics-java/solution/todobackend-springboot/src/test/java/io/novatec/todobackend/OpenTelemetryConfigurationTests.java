@@ -0,0 +1,44 @@
+package io.novatec.todobackend;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.jupiter.api.Test;
+
+import io.opentelemetry.sdk.metrics.InstrumentType;
+import io.opentelemetry.sdk.metrics.data.AggregationTemporality;
+import io.opentelemetry.sdk.metrics.export.AggregationTemporalitySelector;
+
+public class OpenTelemetryConfigurationTests {
+
+	@Test
+	void temporalityIsChosenPerInstrumentType() {
+
+		AggregationTemporalitySelector cumulative = OpenTelemetryConfiguration.temporalitySelector("cumulative");
+		AggregationTemporalitySelector delta = OpenTelemetryConfiguration.temporalitySelector("delta");
+		AggregationTemporalitySelector lowMemory = OpenTelemetryConfiguration.temporalitySelector("lowmemory");
+
+		assertThat(cumulative.getAggregationTemporality(InstrumentType.COUNTER))
+				.isEqualTo(AggregationTemporality.CUMULATIVE);
+		assertThat(delta.getAggregationTemporality(InstrumentType.COUNTER))
+				.isEqualTo(AggregationTemporality.DELTA);
+		assertThat(delta.getAggregationTemporality(InstrumentType.UP_DOWN_COUNTER))
+				.isEqualTo(AggregationTemporality.CUMULATIVE);
+		assertThat(lowMemory.getAggregationTemporality(InstrumentType.HISTOGRAM))
+				.isEqualTo(AggregationTemporality.DELTA);
+		assertThat(lowMemory.getAggregationTemporality(InstrumentType.OBSERVABLE_COUNTER))
+				.isEqualTo(AggregationTemporality.CUMULATIVE);
+	}
+
+	@Test
+	void unknownTemporalitiesAreRejected() {
+
+		assertThatThrownBy(() -> OpenTelemetryConfiguration.temporalitySelector("Delta"))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessageContaining("todobackend.metrics.temporality");
+		assertThatThrownBy(() -> OpenTelemetryConfiguration.temporalitySelector("bogus"))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessageEndingWith("not bogus");
+	}
+
+}
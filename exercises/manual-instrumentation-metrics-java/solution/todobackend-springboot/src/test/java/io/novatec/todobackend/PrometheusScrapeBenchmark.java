@@ -0,0 +1,122 @@
+package io.novatec.todobackend;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.Meter;
+import io.opentelemetry.exporter.prometheus.PrometheusMetricReader;
+import io.opentelemetry.sdk.metrics.SdkMeterProvider;
+import io.prometheus.metrics.expositionformats.ExpositionFormatWriter;
+import io.prometheus.metrics.expositionformats.ExpositionFormats;
+import io.prometheus.metrics.model.snapshots.MetricSnapshots;
+
+/**
+ * Scrape latency of the prometheus endpoint with 10k series (10 counters with
+ * 1000 attribute sets each): collecting the snapshots, and writing them
+ * streamed, as the endpoint does, or into one buffer first. Prints the median
+ * of the scrapes, the payload size and the bytes allocated on the scraping
+ * thread.
+ *
+ * Run with:
+ * mvn test-compile exec:java -Dexec.mainClass=io.novatec.todobackend.PrometheusScrapeBenchmark -Dexec.classpathScope=test
+ */
+public class PrometheusScrapeBenchmark {
+
+	static final int METRICS = 10;
+	static final int SERIES_PER_METRIC = 1000;
+	static final int SCRAPES = 50;
+
+	public static void main(String[] args) throws IOException {
+
+		PrometheusMetricReader reader = new PrometheusMetricReader(true, resourceAttribute -> false);
+		SdkMeterProvider meterProvider = SdkMeterProvider.builder().registerMetricReader(reader).build();
+		Meter meter = meterProvider.get("benchmark");
+		AttributeKey<String> route = AttributeKey.stringKey("http.route");
+		AttributeKey<String> method = AttributeKey.stringKey("http.request.method");
+		for (int m = 0; m < METRICS; m++) {
+			LongCounter counter = meter.counterBuilder("todobackend.benchmark.requests_" + m).build();
+			for (int s = 0; s < SERIES_PER_METRIC; s++)
+				counter.add(s, Attributes.of(route, "/todos/" + (s / 4), method, "GET-" + (s % 4)));
+		}
+
+		ExpositionFormats formats = ExpositionFormats.init();
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+		System.out.printf("%-12s %-9s %12s %12s %14s %14s%n", "format", "writing", "collect ms", "write ms",
+				"payload bytes", "allocated KB");
+		for (int round = 0; round < 3; round++) {
+			for (ExpositionFormatWriter writer : new ExpositionFormatWriter[] { formats.getPrometheusTextFormatWriter(),
+					formats.getOpenMetricsTextFormatWriter(), formats.getPrometheusProtobufWriter() }) {
+				scrape(reader, writer, threads, false);
+				scrape(reader, writer, threads, true);
+			}
+		}
+		meterProvider.close();
+	}
+
+	static void scrape(PrometheusMetricReader reader, ExpositionFormatWriter writer,
+			com.sun.management.ThreadMXBean threads, boolean buffered) throws IOException {
+
+		double[] collectMillis = new double[SCRAPES];
+		double[] writeMillis = new double[SCRAPES];
+		long payload = 0;
+		long allocated = threads.getCurrentThreadAllocatedBytes();
+		for (int i = 0; i < SCRAPES; i++) {
+			long start = System.nanoTime();
+			MetricSnapshots snapshots = reader.collect();
+			long collected = System.nanoTime();
+			CountingOutputStream response = new CountingOutputStream();
+			if (buffered) {
+				ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+				writer.write(buffer, snapshots);
+				buffer.writeTo(response);
+			} else {
+				writer.write(response, snapshots);
+			}
+			long written = System.nanoTime();
+			collectMillis[i] = (collected - start) / 1e6;
+			writeMillis[i] = (written - collected) / 1e6;
+			payload = response.count;
+		}
+		allocated = threads.getCurrentThreadAllocatedBytes() - allocated;
+		System.out.printf("%-12s %-9s %12.2f %12.2f %14d %14d%n", name(writer), buffered ? "buffered" : "streamed",
+				median(collectMillis), median(writeMillis), payload, allocated / SCRAPES / 1024);
+	}
+
+	static String name(ExpositionFormatWriter writer) {
+
+		String contentType = writer.getContentType();
+		if (contentType.contains("protobuf"))
+			return "protobuf";
+		return contentType.contains("openmetrics") ? "openmetrics" : "text";
+	}
+
+	static double median(double[] values) {
+
+		double[] sorted = values.clone();
+		Arrays.sort(sorted);
+		return sorted[sorted.length / 2];
+	}
+
+	static class CountingOutputStream extends OutputStream {
+
+		long count;
+
+		@Override
+		public void write(int b) {
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			count += len;
+		}
+	}
+
+}
@@ -0,0 +1,75 @@
+package io.novatec.todobackend;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class PrometheusScrapeEndpointTests {
+
+	static final String TEXT = "text/plain;version=0.0.4";
+	static final String OPEN_METRICS = "application/openmetrics-text;version=1.0.0";
+	static final String PROTOBUF = "application/vnd.google.protobuf;proto=io.prometheus.client.MetricFamily;encoding=delimited";
+
+	@Autowired
+	MockMvc mockMvc;
+
+	@BeforeEach
+	void addTodo() throws Exception {
+		mockMvc.perform(post("/todos/scraped")).andExpect(status().isOk());
+	}
+
+	@Test
+	void prometheusTextIsTheDefault() throws Exception {
+
+		String scrape = scrape(null, "text/plain");
+
+		assertThat(scrape).contains("# TYPE hibernate_entities_total counter",
+				"hibernate_entities_total{hibernate_entity_operation=\"insert\"");
+		assertThat(scrape).doesNotContain("# EOF");
+		assertThat(scrape(TEXT, "text/plain")).isNotEmpty();
+	}
+
+	@Test
+	void openMetricsIsWrittenWhenAskedFor() throws Exception {
+
+		String scrape = scrape(OPEN_METRICS, "application/openmetrics-text");
+
+		assertThat(scrape).contains("# TYPE hibernate_entities counter",
+				"hibernate_entities_total{hibernate_entity_operation=\"insert\"");
+		assertThat(scrape).endsWith("# EOF\n");
+	}
+
+	@Test
+	void protobufIsWrittenWhenAskedFor() throws Exception {
+
+		// length-delimited MetricFamily messages, whose names are plain strings in the wire format
+		String scrape = scrape(PROTOBUF, "application/vnd.google.protobuf");
+
+		assertThat(scrape).contains("hibernate_entities_total", "hibernate_entity_operation");
+		assertThat(scrape).doesNotContain("# TYPE");
+	}
+
+	private String scrape(String accept, String expectedContentType) throws Exception {
+
+		byte[] body = mockMvc.perform(accept == null ? get("/actuator/prometheus")
+				: get("/actuator/prometheus").header(HttpHeaders.ACCEPT, accept))
+				.andExpect(status().isOk())
+				.andExpect(content().contentTypeCompatibleWith(expectedContentType))
+				.andReturn().getResponse().getContentAsByteArray();
+		return new String(body, ISO_8859_1);
+	}
+
+}
@@ -1,12 +1,37 @@
 package io.novatec.todobackend;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
 
 @SpringBootTest
+@AutoConfigureMockMvc
 public class TodobackendApplicationIntegrationTests {
 
+    @Autowired
+    MockMvc mockMvc;
+
     @Test
     void contextLoads() {
     }
-}
\ No newline at end of file
+
+    @Test
+    void tutorialInstrumentsAreNotDuplicatedByMicrometer() throws Exception {
+
+        mockMvc.perform(post("/todos/scraped")).andExpect(status().isOk());
+
+        String scrape = mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        assertThat(scrape).contains("http_server_request_duration");
+        assertThat(scrape).doesNotContain("http_server_requests", "system_cpu_usage");
+    }
+}
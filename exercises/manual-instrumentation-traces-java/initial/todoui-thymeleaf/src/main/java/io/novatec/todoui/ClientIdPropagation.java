@@ -0,0 +1,41 @@
+package io.novatec.todoui;
+
+import java.io.IOException;
+import java.util.UUID;
+
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+/**
+ * Tells the backend which browser session a call is made for, so a user who
+ * just changed a todo reads it back from the primary database. Without it all
+ * users behind the UI look like one client to the backend.
+ */
+public class ClientIdPropagation implements ClientHttpRequestInterceptor {
+
+	static final String CLIENT_ID_HEADER = "X-Client-Id";
+	static final String CLIENT_ID_ATTRIBUTE = ClientIdPropagation.class.getName() + ".clientId";
+
+	@Override
+	public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+			throws IOException {
+
+		RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+		if (attributes != null) {
+			synchronized (attributes.getSessionMutex()) {
+				Object clientId = attributes.getAttribute(CLIENT_ID_ATTRIBUTE, RequestAttributes.SCOPE_SESSION);
+				if (clientId == null) {
+					clientId = UUID.randomUUID().toString();
+					attributes.setAttribute(CLIENT_ID_ATTRIBUTE, clientId, RequestAttributes.SCOPE_SESSION);
+				}
+				request.getHeaders().set(CLIENT_ID_HEADER, clientId.toString());
+			}
+		}
+		return execution.execute(request, body);
+	}
+
+}
@@ -0,0 +1,57 @@
+package io.novatec.todoui;
+
+import java.io.IOException;
+
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.baggage.Baggage;
+import io.opentelemetry.context.Context;
+
+/**
+ * Puts the time the UI is still willing to wait into the baggage of every
+ * backend call, so the backend can drop work nobody waits for anymore. The
+ * budget is relative, the backend counts it down from the arrival of the
+ * request on its own clock, so clock skew between the hosts does not move it.
+ * An existing budget from further upstream is kept if it is smaller.
+ */
+public class DeadlinePropagation implements ClientHttpRequestInterceptor {
+
+	static final String BUDGET_KEY = "todo.budget_ms";
+
+	private final OpenTelemetry openTelemetry;
+	private final long timeoutMillis;
+
+	public DeadlinePropagation(OpenTelemetry openTelemetry, long timeoutMillis) {
+		this.openTelemetry = openTelemetry;
+		this.timeoutMillis = timeoutMillis;
+	}
+
+	@Override
+	public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+			throws IOException {
+
+		Context context = Context.current();
+		Baggage baggage = Baggage.fromContext(context);
+
+		long budget = timeoutMillis;
+		String upstream = baggage.getEntryValue(BUDGET_KEY);
+		if (upstream != null) {
+			try {
+				budget = Math.min(budget, Long.parseLong(upstream));
+			} catch (NumberFormatException e) {
+				// a malformed budget from the client is ignored, as the backend does
+			}
+		}
+
+		Context outgoing = context.with(baggage.toBuilder().put(BUDGET_KEY, Long.toString(budget)).build());
+		openTelemetry.getPropagators().getTextMapPropagator()
+				.inject(outgoing, request.getHeaders(), (headers, key, value) -> headers.set(key, value));
+
+		return execution.execute(request, body);
+	}
+
+}
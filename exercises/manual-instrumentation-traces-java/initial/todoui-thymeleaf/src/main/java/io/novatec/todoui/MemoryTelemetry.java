@@ -0,0 +1,267 @@
+package io.novatec.todoui;
+
+import static io.opentelemetry.api.common.AttributeKey.longKey;
+import static io.opentelemetry.api.common.AttributeKey.stringKey;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.logs.Severity;
+import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.Meter;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+/**
+ * Memory telemetry for spotting leaks: heap pool usage right after GC (what is
+ * really retained), growth rate of the old generation, collection usage
+ * threshold notifications, and direct and mapped buffer pools. When a threshold
+ * is exceeded a log event with the top of a class histogram is emitted, at
+ * most once per histogram interval. Allocation rate comes from the JFR based
+ * jvm.memory.allocated counter.
+ */
+@Component
+public class MemoryTelemetry implements NotificationListener {
+
+	static final AttributeKey<String> POOL_NAME = stringKey("jvm.memory.pool.name");
+	static final AttributeKey<String> MEMORY_TYPE = stringKey("jvm.memory.type");
+	static final AttributeKey<String> BUFFER_POOL_NAME = stringKey("jvm.buffer.pool.name");
+	static final AttributeKey<Long> USED_BYTES = longKey("jvm.memory.used_bytes");
+	static final AttributeKey<Long> THRESHOLD_BYTES = longKey("jvm.memory.threshold_bytes");
+
+	private Logger logger = LoggerFactory.getLogger(MemoryTelemetry.class);
+
+	private final OpenTelemetry openTelemetry;
+	private final List<MemoryPoolMXBean> pools = ManagementFactory.getMemoryPoolMXBeans();
+	private final List<BufferPoolMXBean> bufferPools = ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class);
+	private final Map<String, Attributes> poolAttributes = new ConcurrentHashMap<>();
+	private final Map<String, Growth> growth = new ConcurrentHashMap<>();
+	private final ExecutorService histogramExecutor = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "class-histogram");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final LongCounter thresholdExceeded;
+
+	@Value("${todoui.memory.threshold-ratio:0.8}")
+	double thresholdRatio;
+
+	@Value("${todoui.memory.histogram.enabled:true}")
+	boolean histogramEnabled;
+
+	@Value("${todoui.memory.histogram.top:20}")
+	int histogramTop;
+
+	@Value("${todoui.memory.histogram.interval-seconds:300}")
+	long histogramIntervalSeconds;
+
+	private volatile boolean histogramTaken;
+	private volatile long lastHistogramNanos;
+
+	public MemoryTelemetry(OpenTelemetry openTelemetry) {
+
+		this.openTelemetry = openTelemetry;
+		Meter meter = openTelemetry.getMeter(MemoryTelemetry.class.getName());
+
+		meter.upDownCounterBuilder("jvm.memory.used")
+				.setDescription("Memory used per pool")
+				.setUnit("By")
+				.buildWithCallback(measurement -> pools.forEach(pool -> measurement.record(pool.getUsage().getUsed(),
+						attributes(pool))));
+		meter.upDownCounterBuilder("jvm.memory.used_after_last_gc")
+				.setDescription("Memory used per heap pool right after the last garbage collection of that pool")
+				.setUnit("By")
+				.buildWithCallback(measurement -> pools.forEach(pool -> {
+					MemoryUsage usage = pool.getCollectionUsage();
+					if (usage != null)
+						measurement.record(usage.getUsed(), attributes(pool));
+				}));
+		meter.gaugeBuilder("jvm.memory.growth_rate")
+				.setDescription("Growth of the memory used after GC per tenured pool, between the last two collections")
+				.setUnit("By/s")
+				.buildWithCallback(measurement -> growth.values().forEach(pool -> {
+					if (!Double.isNaN(pool.rate))
+						measurement.record(pool.rate, pool.attributes);
+				}));
+		thresholdExceeded = meter.counterBuilder("jvm.memory.threshold_exceeded")
+				.setDescription("Times a pool was still above its usage threshold after a garbage collection")
+				.setUnit("{notification}")
+				.build();
+
+		meter.upDownCounterBuilder("jvm.buffer.memory.used")
+				.setDescription("Memory used by direct and mapped buffers")
+				.setUnit("By")
+				.buildWithCallback(measurement -> bufferPools.forEach(pool -> measurement.record(pool.getMemoryUsed(),
+						Attributes.of(BUFFER_POOL_NAME, pool.getName()))));
+		meter.upDownCounterBuilder("jvm.buffer.memory.limit")
+				.setDescription("Total capacity of direct and mapped buffers")
+				.setUnit("By")
+				.buildWithCallback(measurement -> bufferPools.forEach(pool -> measurement.record(pool.getTotalCapacity(),
+						Attributes.of(BUFFER_POOL_NAME, pool.getName()))));
+		meter.upDownCounterBuilder("jvm.buffer.count")
+				.setDescription("Number of direct and mapped buffers")
+				.setUnit("{buffer}")
+				.buildWithCallback(measurement -> bufferPools.forEach(pool -> measurement.record(pool.getCount(),
+						Attributes.of(BUFFER_POOL_NAME, pool.getName()))));
+	}
+
+	@PostConstruct
+	public void start() {
+
+		for (MemoryPoolMXBean pool : pools) {
+			long max = pool.getUsage().getMax();
+			// eden and survivor spaces have no usage threshold, the tenured pool is the only one that supports both
+			if (pool.getType() == MemoryType.HEAP && pool.isUsageThresholdSupported()
+					&& pool.isCollectionUsageThresholdSupported() && max > 0) {
+				pool.setCollectionUsageThreshold((long) (max * thresholdRatio));
+				growth.put(pool.getName(), new Growth(attributes(pool)));
+			}
+		}
+		((NotificationEmitter) ManagementFactory.getMemoryMXBean()).addNotificationListener(this, null, null);
+		for (var gc : ManagementFactory.getGarbageCollectorMXBeans())
+			if (gc instanceof NotificationEmitter emitter)
+				emitter.addNotificationListener(this, null, null);
+	}
+
+	@PreDestroy
+	public void stop() throws ListenerNotFoundException {
+
+		((NotificationEmitter) ManagementFactory.getMemoryMXBean()).removeNotificationListener(this);
+		for (var gc : ManagementFactory.getGarbageCollectorMXBeans())
+			if (gc instanceof NotificationEmitter emitter)
+				emitter.removeNotificationListener(this);
+		histogramExecutor.shutdownNow();
+	}
+
+	@Override
+	public void handleNotification(Notification notification, Object handback) {
+
+		if (MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(notification.getType()))
+			thresholdExceeded(MemoryNotificationInfo.from((CompositeData) notification.getUserData()));
+		else if (GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType()))
+			afterCollection(GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData()));
+	}
+
+	private void afterCollection(GarbageCollectionNotificationInfo info) {
+
+		// young collections promote into the tenured pool too, so every collection is a data point
+		long now = System.nanoTime();
+		info.getGcInfo().getMemoryUsageAfterGc().forEach((name, usage) -> {
+			Growth poolGrowth = growth.get(name);
+			if (poolGrowth != null)
+				poolGrowth.update(usage.getUsed(), now);
+		});
+	}
+
+	private void thresholdExceeded(MemoryNotificationInfo info) {
+
+		String poolName = info.getPoolName();
+		long used = info.getUsage().getUsed();
+		long threshold = (long) (info.getUsage().getMax() * thresholdRatio);
+		Attributes attributes = poolAttributes.getOrDefault(poolName, Attributes.of(POOL_NAME, poolName));
+		thresholdExceeded.add(1, attributes);
+
+		logger.warn("Memory pool " + poolName + " still uses " + used + " bytes after GC, threshold is " + threshold);
+
+		long now = System.nanoTime();
+		if (histogramEnabled
+				&& (!histogramTaken || now - lastHistogramNanos > TimeUnit.SECONDS.toNanos(histogramIntervalSeconds))) {
+			histogramTaken = true;
+			lastHistogramNanos = now;
+			// the histogram walks the whole heap, it must not run on the notification thread
+			Instant exceededAt = Instant.now();
+			histogramExecutor.execute(() -> emit(exceededAt, attributes, used, threshold, classHistogram(histogramTop)));
+		} else {
+			emit(Instant.now(), attributes, used, threshold, null);
+		}
+	}
+
+	private void emit(Instant timestamp, Attributes attributes, long used, long threshold, String histogram) {
+
+		openTelemetry.getLogsBridge().get(MemoryTelemetry.class.getName())
+				.logRecordBuilder()
+				.setTimestamp(timestamp)
+				.setSeverity(Severity.WARN)
+				.setSeverityText("WARN")
+				.setAllAttributes(attributes)
+				.setAttribute(USED_BYTES, used)
+				.setAttribute(THRESHOLD_BYTES, threshold)
+				.setBody(histogram == null ? "memory usage threshold exceeded"
+						: "memory usage threshold exceeded, largest classes:\n" + histogram)
+				.emit();
+	}
+
+	/**
+	 * The header and the top entries of GC.class_histogram, the full output
+	 * lists every loaded class.
+	 */
+	static String classHistogram(int top) {
+
+		try {
+			String histogram = (String) ManagementFactory.getPlatformMBeanServer().invoke(
+					new ObjectName("com.sun.management:type=DiagnosticCommand"), "gcClassHistogram",
+					new Object[] { new String[0] }, new String[] { String[].class.getName() });
+			String[] lines = histogram.split("\n");
+			return String.join("\n", Arrays.copyOf(lines, Math.min(lines.length, top + 2)));
+		} catch (Exception e) {
+			return "class histogram not available: " + e;
+		}
+	}
+
+	private Attributes attributes(MemoryPoolMXBean pool) {
+
+		return poolAttributes.computeIfAbsent(pool.getName(), name -> Attributes.of(POOL_NAME, name, MEMORY_TYPE,
+				pool.getType() == MemoryType.HEAP ? "heap" : "non_heap"));
+	}
+
+	private static class Growth {
+
+		final Attributes attributes;
+		long lastUsed = -1;
+		long lastNanos;
+		volatile double rate = Double.NaN;
+
+		Growth(Attributes attributes) {
+			this.attributes = attributes;
+		}
+
+		synchronized void update(long used, long now) {
+
+			if (lastUsed >= 0 && now > lastNanos)
+				rate = (used - lastUsed) / ((now - lastNanos) / 1e9);
+			lastUsed = used;
+			lastNanos = now;
+		}
+	}
+
+}
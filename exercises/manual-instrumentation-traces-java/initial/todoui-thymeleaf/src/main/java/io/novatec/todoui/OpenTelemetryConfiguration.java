@@ -1,5 +1,6 @@
 package io.novatec.todoui;
 
+import java.time.Duration;
 import java.util.concurrent.TimeUnit;
 
 import org.springframework.beans.factory.config.ConfigurableBeanFactory;
@@ -17,11 +18,23 @@ import io.opentelemetry.semconv.ResourceAttributes;
 import io.opentelemetry.sdk.trace.SdkTracerProvider;
 import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
 
+//Metrics
+import io.opentelemetry.sdk.metrics.SdkMeterProvider;
+import io.opentelemetry.sdk.metrics.export.PeriodicMetricReader;
+
+//Logs
+import io.opentelemetry.sdk.logs.SdkLoggerProvider;
+import io.opentelemetry.sdk.logs.export.BatchLogRecordProcessor;
+
+import io.opentelemetry.exporter.logging.LoggingMetricExporter;
 import io.opentelemetry.exporter.logging.LoggingSpanExporter;
+import io.opentelemetry.exporter.logging.SystemOutLogRecordExporter;
 import io.opentelemetry.exporter.otlp.trace.OtlpGrpcSpanExporter;
 
 import  io.opentelemetry.api.trace.propagation.W3CTraceContextPropagator;
+import io.opentelemetry.api.baggage.propagation.W3CBaggagePropagator;
 import io.opentelemetry.context.propagation.ContextPropagators;
+import io.opentelemetry.context.propagation.TextMapPropagator;
 
 
 @SuppressWarnings("deprecation")
@@ -30,7 +43,14 @@ public class OpenTelemetryConfiguration {
 
     @Bean
 	@Scope(value = ConfigurableBeanFactory.SCOPE_SINGLETON)
-	public OpenTelemetry openTelemetry(){
+	public ThreadSpanTracker threadSpanTracker() {
+
+		return new ThreadSpanTracker();
+	}
+
+    @Bean
+	@Scope(value = ConfigurableBeanFactory.SCOPE_SINGLETON)
+	public OpenTelemetry openTelemetry(ThreadSpanTracker threadSpanTracker, SpanProfiler spanProfiler){
 
 		Resource resource = Resource.getDefault().toBuilder().put(ResourceAttributes.SERVICE_NAME, "tododui").put(ResourceAttributes.SERVICE_VERSION, "0.1.0").build();
 
@@ -43,15 +63,31 @@ public class OpenTelemetryConfiguration {
 		SdkTracerProvider sdkTracerProvider = SdkTracerProvider.builder()
 			.addSpanProcessor(SimpleSpanProcessor.create(LoggingSpanExporter.create()))
 			.addSpanProcessor(SimpleSpanProcessor.create(jaegerOtlpExporter))
+			.addSpanProcessor(threadSpanTracker)
+			.addSpanProcessor(spanProfiler)
     //      .addSpanProcessor(BatchSpanProcessor.builder(LoggingSpanExporter.create()).build()) // same results for now
 			.setResource(resource)
 			.build();	
 	//		.buildAndRegisterGlobal();	
 
+		SdkMeterProvider sdkMeterProvider = SdkMeterProvider.builder()
+			.registerMetricReader(PeriodicMetricReader.builder(LoggingMetricExporter.create())
+				.setInterval(Duration.ofSeconds(10))
+				.build())
+			.setResource(resource)
+			.build();
+
+		SdkLoggerProvider sdkLoggerProvider = SdkLoggerProvider.builder()
+			.addLogRecordProcessor(BatchLogRecordProcessor.builder(SystemOutLogRecordExporter.create()).build())
+			.setResource(resource)
+			.build();
 
 		OpenTelemetry openTelemetry = OpenTelemetrySdk.builder()
 			.setTracerProvider(sdkTracerProvider)
-			.setPropagators(ContextPropagators.create(W3CTraceContextPropagator.getInstance()))
+			.setMeterProvider(sdkMeterProvider)
+			.setLoggerProvider(sdkLoggerProvider)
+			.setPropagators(ContextPropagators.create(TextMapPropagator.composite(
+				W3CTraceContextPropagator.getInstance(), W3CBaggagePropagator.getInstance())))
 			.build();
 
 		return openTelemetry;
@@ -0,0 +1,46 @@
+package io.novatec.todoui;
+
+import java.util.Map;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.Selector.Match;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.stereotype.Component;
+
+/**
+ * Actuator endpoint for the span profiler. {@code /actuator/profile} lists the
+ * sampled routes and recent traces, {@code /actuator/profile/trace/<trace id>}
+ * and {@code /actuator/profile/route/<route>} download folded stacks that
+ * flame graph tools read directly.
+ */
+@Component
+@Endpoint(id = "profile")
+public class ProfileEndpoint {
+
+	private final SpanProfiler spanProfiler;
+
+	public ProfileEndpoint(SpanProfiler spanProfiler) {
+		this.spanProfiler = spanProfiler;
+	}
+
+	@ReadOperation
+	public Map<String, Object> summary() {
+		return spanProfiler.summary();
+	}
+
+	@ReadOperation(produces = "text/plain")
+	public WebEndpointResponse<String> folded(@Selector String kind, @Selector(match = Match.ALL_REMAINING) String[] id) {
+
+		String folded = null;
+		if ("trace".equals(kind) && id.length == 1)
+			folded = spanProfiler.foldedForTrace(id[0]);
+		else if ("route".equals(kind))
+			folded = spanProfiler.foldedForRoute("/" + String.join("/", id));
+
+		return folded == null ? new WebEndpointResponse<>(WebEndpointResponse.STATUS_NOT_FOUND)
+				: new WebEndpointResponse<>(folded);
+	}
+
+}
@@ -0,0 +1,93 @@
+package io.novatec.todoui;
+
+import java.io.IOException;
+import java.util.Collections;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.Scope;
+import io.opentelemetry.context.propagation.TextMapGetter;
+import io.opentelemetry.semconv.HttpAttributes;
+import io.opentelemetry.semconv.UrlAttributes;
+
+/**
+ * Starts a SERVER span for every request to the UI, so that everything the
+ * request thread does (including profiler samples) belongs to a trace. The span
+ * is named after the matched route once the handler is known.
+ */
+@Component
+public class ServerSpanFilter extends OncePerRequestFilter {
+
+	static final TextMapGetter<HttpServletRequest> GETTER = new TextMapGetter<>() {
+
+		@Override
+		public Iterable<String> keys(HttpServletRequest request) {
+			return Collections.list(request.getHeaderNames());
+		}
+
+		@Override
+		public String get(HttpServletRequest request, String key) {
+			return request == null ? null : request.getHeader(key);
+		}
+	};
+
+	private final OpenTelemetry openTelemetry;
+	private final Tracer tracer;
+
+	public ServerSpanFilter(OpenTelemetry openTelemetry) {
+
+		this.openTelemetry = openTelemetry;
+		this.tracer = openTelemetry.getTracer(ServerSpanFilter.class.getName(), "0.1.0");
+	}
+
+	@Override
+	protected boolean shouldNotFilter(HttpServletRequest request) {
+
+		return request.getRequestURI().startsWith("/actuator");
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+			throws ServletException, IOException {
+
+		Context parent = openTelemetry.getPropagators().getTextMapPropagator().extract(Context.current(), request, GETTER);
+		Span span = tracer.spanBuilder(request.getMethod())
+				.setParent(parent)
+				.setSpanKind(SpanKind.SERVER)
+				.setAttribute(HttpAttributes.HTTP_REQUEST_METHOD, request.getMethod())
+				.setAttribute(UrlAttributes.URL_PATH, request.getRequestURI())
+				.startSpan();
+
+		try (Scope scope = parent.with(span).makeCurrent()) {
+			filterChain.doFilter(request, response);
+		} catch (IOException | ServletException | RuntimeException e) {
+			span.recordException(e);
+			span.setStatus(StatusCode.ERROR);
+			throw e;
+		} finally {
+			Object route = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+			if (route != null) {
+				span.setAttribute(HttpAttributes.HTTP_ROUTE, route.toString());
+				span.updateName(request.getMethod() + " " + route);
+			}
+			span.setAttribute(HttpAttributes.HTTP_RESPONSE_STATUS_CODE, (long) response.getStatus());
+			if (response.getStatus() >= 500)
+				span.setStatus(StatusCode.ERROR);
+			span.end();
+		}
+	}
+
+}
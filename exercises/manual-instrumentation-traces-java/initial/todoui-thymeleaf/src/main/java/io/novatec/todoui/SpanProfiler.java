@@ -0,0 +1,262 @@
+package io.novatec.todoui;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.trace.ReadWriteSpan;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import io.opentelemetry.semconv.HttpAttributes;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordedThread;
+import jdk.jfr.consumer.RecordingStream;
+
+/**
+ * Low frequency sampling profiler built on JFR execution and native method
+ * samples. Every sample is matched to the span that was active on its thread
+ * and aggregated as folded stacks ("root;caller;callee count") per trace and
+ * per route, the route being taken from the local SERVER span when it ends.
+ */
+@Component
+public class SpanProfiler implements SpanProcessor {
+
+	static final String OTHER_STACKS = "[other stacks]";
+
+	private Logger logger = LoggerFactory.getLogger(SpanProfiler.class);
+
+	private final ThreadSpanTracker threadSpanTracker;
+	private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+	private final Map<String, Profile> traces;
+	private final Map<String, Profile> routes = new HashMap<>();
+
+	private final boolean enabled;
+	private final long periodMillis;
+	private final int maxRoutes;
+	private final int maxStacks;
+
+	private RecordingStream stream;
+	private long startedNanos;
+	private long samples;
+	private long unattributed;
+	private volatile long consumerThreadId = -1;
+
+	public SpanProfiler(ThreadSpanTracker threadSpanTracker,
+			@Value("${todoui.profiler.enabled:true}") boolean enabled,
+			@Value("${todoui.profiler.period-ms:20}") long periodMillis,
+			@Value("${todoui.profiler.max-traces:200}") int maxTraces,
+			@Value("${todoui.profiler.max-routes:100}") int maxRoutes,
+			@Value("${todoui.profiler.max-stacks:1000}") int maxStacks) {
+
+		this.threadSpanTracker = threadSpanTracker;
+		this.enabled = enabled;
+		this.periodMillis = periodMillis;
+		this.maxRoutes = maxRoutes;
+		this.maxStacks = maxStacks;
+		this.traces = new LinkedHashMap<>() {
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Profile> eldest) {
+				return size() > maxTraces;
+			}
+		};
+	}
+
+	@PostConstruct
+	public void start() {
+
+		if (!enabled)
+			return;
+
+		stream = new RecordingStream();
+		stream.setReuse(true);
+		// threads in native code (clock reads, socket I/O) are only seen by the native method sampler
+		stream.enable("jdk.ExecutionSample").withPeriod(Duration.ofMillis(periodMillis));
+		stream.enable("jdk.NativeMethodSample").withPeriod(Duration.ofMillis(periodMillis));
+		stream.onEvent("jdk.ExecutionSample", this::onSample);
+		stream.onEvent("jdk.NativeMethodSample", this::onSample);
+		startedNanos = System.nanoTime();
+		stream.startAsync();
+		logger.info("Profiler sampling every " + periodMillis + " ms");
+	}
+
+	@PreDestroy
+	public void stop() {
+
+		if (stream != null)
+			stream.close();
+	}
+
+	private void onSample(RecordedEvent event) {
+
+		if (consumerThreadId < 0)
+			consumerThreadId = Thread.currentThread().getId();
+
+		RecordedThread thread = event.getThread("sampledThread");
+		RecordedStackTrace stackTrace = event.getStackTrace();
+		if (thread == null || stackTrace == null)
+			return;
+
+		SpanContext span = threadSpanTracker.spanAt(thread.getJavaThreadId(), event.getStartTime().toEpochMilli());
+		String stack = span == null ? null : fold(stackTrace);
+		synchronized (this) {
+			samples++;
+			if (span == null) {
+				unattributed++;
+				return;
+			}
+			Profile trace = traces.computeIfAbsent(span.getTraceId(), id -> new Profile());
+			trace.add(stack, 1, maxStacks);
+			Profile route = trace.route == null ? null : route(trace.route);
+			if (route != null)
+				route.add(stack, 1, maxStacks);
+		}
+	}
+
+	static String fold(RecordedStackTrace stackTrace) {
+
+		List<RecordedFrame> frames = stackTrace.getFrames();
+		StringBuilder folded = new StringBuilder(frames.size() * 48);
+		if (stackTrace.isTruncated())
+			folded.append("[truncated];");
+		for (int i = frames.size() - 1; i >= 0; i--) {
+			RecordedFrame frame = frames.get(i);
+			if (frame.getMethod() == null)
+				continue;
+			folded.append(frame.getMethod().getType().getName()).append('.').append(frame.getMethod().getName());
+			if (i > 0)
+				folded.append(';');
+		}
+		return folded.toString();
+	}
+
+	@Override
+	public void onStart(Context parentContext, ReadWriteSpan span) {
+	}
+
+	@Override
+	public boolean isStartRequired() {
+		return false;
+	}
+
+	@Override
+	public void onEnd(ReadableSpan span) {
+
+		if (!enabled || span.getKind() != SpanKind.SERVER)
+			return;
+		String route = span.getAttribute(HttpAttributes.HTTP_ROUTE);
+		if (route == null)
+			route = span.getName();
+		else if (route.isEmpty())
+			route = "/";
+
+		synchronized (this) {
+			// samples usually arrive after the span ended, those that did not are credited to the route now
+			Profile trace = traces.computeIfAbsent(span.getSpanContext().getTraceId(), id -> new Profile());
+			if (trace.route != null)
+				return;
+			trace.route = route;
+			Profile profile = route(route);
+			if (profile != null)
+				trace.stacks.forEach((stack, count) -> profile.add(stack, count, maxStacks));
+		}
+	}
+
+	@Override
+	public boolean isEndRequired() {
+		return enabled;
+	}
+
+	private Profile route(String route) {
+
+		Profile profile = routes.get(route);
+		if (profile == null && routes.size() < maxRoutes) {
+			profile = new Profile();
+			routes.put(route, profile);
+		}
+		return profile;
+	}
+
+	synchronized String foldedForTrace(String traceId) {
+
+		Profile profile = traces.get(traceId);
+		return profile == null ? null : profile.folded();
+	}
+
+	synchronized String foldedForRoute(String route) {
+
+		Profile profile = routes.get(route);
+		return profile == null ? null : profile.folded();
+	}
+
+	synchronized Map<String, Object> summary() {
+
+		Map<String, Object> summary = new LinkedHashMap<>();
+		summary.put("enabled", enabled);
+		summary.put("periodMs", periodMillis);
+		summary.put("samples", samples);
+		summary.put("unattributedSamples", unattributed);
+
+		// the JFR sampler itself runs in the JVM, the cost visible here is consuming and folding the samples
+		long consumerCpuNanos = consumerThreadId < 0 ? 0 : Math.max(0, threadMXBean.getThreadCpuTime(consumerThreadId));
+		long elapsedNanos = enabled ? System.nanoTime() - startedNanos : 0;
+		summary.put("consumerCpuMs", consumerCpuNanos / 1_000_000);
+		summary.put("consumerCpuPercent", elapsedNanos == 0 ? 0.0 : 100.0 * consumerCpuNanos / elapsedNanos);
+
+		Map<String, Long> routeSamples = new LinkedHashMap<>();
+		routes.forEach((route, profile) -> routeSamples.put(route, profile.samples));
+		summary.put("routes", routeSamples);
+
+		List<Map<String, Object>> recent = new ArrayList<>();
+		traces.forEach((traceId, profile) -> {
+			Map<String, Object> trace = new LinkedHashMap<>();
+			trace.put("traceId", traceId);
+			trace.put("route", profile.route);
+			trace.put("samples", profile.samples);
+			recent.add(trace);
+		});
+		summary.put("traces", recent);
+		return summary;
+	}
+
+	private static class Profile {
+
+		final Map<String, Long> stacks = new HashMap<>();
+		String route;
+		long samples;
+
+		void add(String stack, long count, int maxStacks) {
+
+			samples += count;
+			String key = stacks.containsKey(stack) || stacks.size() < maxStacks ? stack : OTHER_STACKS;
+			stacks.merge(key, count, Long::sum);
+		}
+
+		String folded() {
+
+			StringBuilder folded = new StringBuilder();
+			stacks.forEach((stack, count) -> folded.append(stack).append(' ').append(count).append('\n'));
+			return folded.toString();
+		}
+	}
+
+}
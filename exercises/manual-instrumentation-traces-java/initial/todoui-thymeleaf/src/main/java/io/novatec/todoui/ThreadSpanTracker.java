@@ -0,0 +1,138 @@
+package io.novatec.todoui;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.trace.ReadWriteSpan;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+
+/**
+ * Remembers which spans recently ran on which thread, so that events reported
+ * later for a thread and a point in time (such as JFR events) can be matched
+ * to the span that was active then. Histories of threads that are gone are
+ * swept when a new thread shows up, once they are too old for late events.
+ */
+public class ThreadSpanTracker implements SpanProcessor {
+
+	static final int SPANS_PER_THREAD = 16;
+	static final long RETENTION_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+	private final Map<Long, SpanHistory> threads = new ConcurrentHashMap<>();
+	private final AtomicLong nextSweepMillis = new AtomicLong();
+
+	@Override
+	public void onStart(Context parentContext, ReadWriteSpan span) {
+
+		long threadId = Thread.currentThread().getId();
+		long now = System.currentTimeMillis();
+		SpanHistory history = threads.get(threadId);
+		if (history == null) {
+			history = threads.computeIfAbsent(threadId, id -> new SpanHistory(now));
+			sweep(now);
+		}
+		history.started(span.getSpanContext(), now);
+	}
+
+	@Override
+	public boolean isStartRequired() {
+		return true;
+	}
+
+	@Override
+	public void onEnd(ReadableSpan span) {
+
+		SpanHistory history = threads.get(Thread.currentThread().getId());
+		if (history != null)
+			history.ended(span.getSpanContext(), System.currentTimeMillis());
+	}
+
+	@Override
+	public boolean isEndRequired() {
+		return true;
+	}
+
+	/**
+	 * Drops the histories of threads that are no longer alive and have not run a
+	 * span within the retention time.
+	 */
+	void sweep(long now) {
+
+		long nextSweep = nextSweepMillis.get();
+		if (now < nextSweep || !nextSweepMillis.compareAndSet(nextSweep, now + RETENTION_MILLIS))
+			return;
+
+		Set<Long> alive = Arrays.stream(ManagementFactory.getThreadMXBean().getAllThreadIds()).boxed()
+				.collect(Collectors.toSet());
+		threads.entrySet().removeIf(
+				entry -> !alive.contains(entry.getKey()) && now - entry.getValue().lastActive > RETENTION_MILLIS);
+	}
+
+	int trackedThreads() {
+		return threads.size();
+	}
+
+	/**
+	 * The innermost span that ran on the thread at the given time, or null.
+	 */
+	SpanContext spanAt(long threadId, long epochMillis) {
+
+		SpanHistory history = threads.get(threadId);
+		return history == null ? null : history.spanAt(epochMillis);
+	}
+
+	private static class SpanHistory {
+
+		private final SpanContext[] spans = new SpanContext[SPANS_PER_THREAD];
+		private final long[] starts = new long[SPANS_PER_THREAD];
+		private final long[] ends = new long[SPANS_PER_THREAD];
+		private int next;
+		private volatile long lastActive;
+
+		SpanHistory(long now) {
+			lastActive = now;
+		}
+
+		synchronized void started(SpanContext span, long now) {
+
+			lastActive = now;
+			spans[next] = span;
+			starts[next] = now;
+			ends[next] = Long.MAX_VALUE;
+			next = (next + 1) % SPANS_PER_THREAD;
+		}
+
+		synchronized void ended(SpanContext span, long now) {
+
+			for (int i = 0; i < SPANS_PER_THREAD; i++) {
+				if (spans[i] == span) {
+					ends[i] = now;
+					lastActive = now;
+					return;
+				}
+			}
+		}
+
+		synchronized SpanContext spanAt(long epochMillis) {
+
+			SpanContext innermost = null;
+			long latestStart = Long.MIN_VALUE;
+			for (int i = 0; i < SPANS_PER_THREAD; i++) {
+				if (spans[i] != null && starts[i] <= epochMillis && epochMillis <= ends[i] && starts[i] >= latestStart) {
+					innermost = spans[i];
+					latestStart = starts[i];
+				}
+			}
+			return innermost;
+		}
+	}
+
+}
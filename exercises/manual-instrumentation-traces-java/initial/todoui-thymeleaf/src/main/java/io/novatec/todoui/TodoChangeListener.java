@@ -0,0 +1,202 @@
+package io.novatec.todoui;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.Scope;
+import io.opentelemetry.context.propagation.TextMapGetter;
+
+@Component
+public class TodoChangeListener {
+
+	private Logger logger = LoggerFactory.getLogger(TodoChangeListener.class);
+
+	private final Set<String> items = Collections.synchronizedSet(new LinkedHashSet<>());
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final RestTemplate template;
+
+	private final OpenTelemetry openTelemetry;
+	private final Tracer tracer;
+
+	private volatile boolean inSync;
+	private volatile boolean running;
+	private Thread listenerThread;
+
+	@Value("${backend.url}")
+	String endpoint;
+
+	@Value("${todoui.changes.enabled:true}")
+	boolean enabled;
+
+	public TodoChangeListener(OpenTelemetry openTelemetry,
+			@Value("${todoui.changes.read-timeout-seconds:60}") int readTimeoutSeconds) {
+
+		this.openTelemetry = openTelemetry;
+		this.tracer = openTelemetry.getTracer(TodoChangeListener.class.getName(), "0.1.0");
+
+		// the backend sends heartbeats, so a silent connection beyond the read timeout is dead
+		SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+		requestFactory.setReadTimeout(readTimeoutSeconds * 1000);
+		this.template = new RestTemplate(requestFactory);
+	}
+
+	@PostConstruct
+	public void start() {
+
+		if (!enabled)
+			return;
+
+		running = true;
+		listenerThread = new Thread(this::listen, "todo-change-listener");
+		listenerThread.setDaemon(true);
+		listenerThread.start();
+	}
+
+	@PreDestroy
+	public void stop() {
+
+		running = false;
+		if (listenerThread != null)
+			listenerThread.interrupt();
+	}
+
+	boolean isInSync() {
+		return inSync;
+	}
+
+	List<String> items() {
+
+		synchronized (items) {
+			return new ArrayList<>(items);
+		}
+	}
+
+	void apply(String type, String todo) {
+
+		if ("added".equals(type)) {
+			items.add(todo);
+		} else if ("removed".equals(type)) {
+			items.remove(todo);
+		}
+	}
+
+	private void listen() {
+
+		long backoffMillis = 1000;
+		while (running) {
+			try {
+				template.execute(endpoint + "/todos/changes", HttpMethod.GET,
+						request -> request.getHeaders().setAccept(List.of(MediaType.TEXT_EVENT_STREAM)),
+						response -> {
+							consume(new BufferedReader(new InputStreamReader(response.getBody(), StandardCharsets.UTF_8)));
+							return null;
+						});
+				backoffMillis = 1000;
+			} catch (Exception e) {
+				logger.info("Todo change feed unavailable, falling back to polling: " + e.getMessage());
+			}
+
+			inSync = false;
+			try {
+				Thread.sleep(backoffMillis);
+			} catch (InterruptedException e) {
+				return;
+			}
+			backoffMillis = Math.min(backoffMillis * 2, 30000);
+		}
+	}
+
+	private void consume(BufferedReader reader) throws IOException {
+
+		String event = null;
+		StringBuilder data = new StringBuilder();
+		String line;
+		while (running && (line = reader.readLine()) != null) {
+			if (line.isEmpty()) {
+				if (event != null)
+					dispatch(event, data.toString());
+				event = null;
+				data.setLength(0);
+			} else if (line.startsWith("event:")) {
+				event = line.substring("event:".length()).trim();
+			} else if (line.startsWith("data:")) {
+				data.append(line.substring("data:".length()));
+			}
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void dispatch(String event, String data) throws IOException {
+
+		if ("ready".equals(event)) {
+			String[] snapshot = template.exchange(endpoint + "/todos/", HttpMethod.GET,
+					TodouiApplication.TODO_LIST_REQUEST, String[].class).getBody();
+			synchronized (items) {
+				items.clear();
+				if (snapshot != null)
+					items.addAll(Arrays.asList(snapshot));
+			}
+			inSync = true;
+			logger.info("Todo change feed connected, " + items.size() + " items in sync");
+			return;
+		}
+
+		Map<String, Object> change = objectMapper.readValue(data, Map.class);
+		Map<String, String> carrier = (Map<String, String>) change.getOrDefault("context", Map.of());
+
+		Context parentContext = openTelemetry.getPropagators().getTextMapPropagator()
+				.extract(Context.current(), carrier, new MapGetter());
+
+		Span span = tracer.spanBuilder("todo " + event)
+				.setParent(parentContext)
+				.setSpanKind(SpanKind.CONSUMER)
+				.startSpan();
+		try (Scope scope = span.makeCurrent()) {
+			apply(event, (String) change.get("todo"));
+		} finally {
+			span.end();
+		}
+	}
+
+	private static class MapGetter implements TextMapGetter<Map<String, String>> {
+
+		@Override
+		public Iterable<String> keys(Map<String, String> carrier) {
+			return carrier.keySet();
+		}
+
+		@Override
+		public String get(Map<String, String> carrier, String key) {
+			return carrier == null ? null : carrier.get(key);
+		}
+	}
+
+}
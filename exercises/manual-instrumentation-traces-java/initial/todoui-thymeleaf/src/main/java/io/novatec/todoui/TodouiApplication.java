@@ -9,10 +9,16 @@ import javax.servlet.http.HttpServletResponse;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -25,11 +31,15 @@ import io.opentelemetry.api.trace.Span;
 import io.opentelemetry.api.trace.SpanKind;
 import io.opentelemetry.api.trace.Tracer;
 import io.opentelemetry.context.Context;
+import io.opentelemetry.context.Scope;
 
 @SpringBootApplication
 @Controller
 public class TodouiApplication {
 
+	// the todo list is requested as CBOR, which is more compact and cheaper to parse than JSON
+	static final HttpEntity<Void> TODO_LIST_REQUEST = todoListRequest();
+
 	private Logger logger = LoggerFactory.getLogger(TodouiApplication.class);
 
 	private OpenTelemetry openTelemetry;
@@ -37,11 +47,21 @@ public class TodouiApplication {
 
 	@Value("${backend.url}")
 	String endpoint;
-	RestTemplate template = new RestTemplate();
+	RestTemplate template;
+
+	@Autowired
+	TodoChangeListener todoChangeListener;
 
-	public TodouiApplication(OpenTelemetry openTelemetry) {
+	public TodouiApplication(OpenTelemetry openTelemetry, @Value("${todoui.backend.timeout-ms:2000}") int timeoutMillis) {
 		this.openTelemetry = openTelemetry;
 		tracer = this.openTelemetry.getTracer(TodouiApplication.class.getName(), "0.1.0");
+
+		// the UI gives up after the timeout, the budget in the baggage tells the backend how long that is
+		SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+		requestFactory.setReadTimeout(timeoutMillis);
+		template = new RestTemplate(requestFactory);
+		template.getInterceptors().add(new DeadlinePropagation(openTelemetry, timeoutMillis));
+		template.getInterceptors().add(new ClientIdPropagation());
 	}
 
 	@PostConstruct
@@ -101,8 +121,13 @@ public class TodouiApplication {
 	@GetMapping
 	public String getItems(Model model){
 
+		if(todoChangeListener.isInSync()){
+			model.addAttribute("items", todoChangeListener.items());
+			return "items";
+		}
+
 		logger.info("GET "+ endpoint + "/todos/");
-		ResponseEntity<String[]> response = template.getForEntity(endpoint+"/todos/", String[].class);
+		ResponseEntity<String[]> response = template.exchange(endpoint+"/todos/", HttpMethod.GET, TODO_LIST_REQUEST, String[].class);
 		if(response != null) model.addAttribute("items", response.getBody());
 		return "items";
 
@@ -115,16 +140,19 @@ public class TodouiApplication {
 
 		Span span = tracer.spanBuilder("addItem").setSpanKind(SpanKind.CLIENT).startSpan();
 
-		Context context = Context.current();
+		try (Scope scope = span.makeCurrent()) {
 
-		System.out.println("Context: "+context);
-		System.out.println("### Hallo");
+			Context context = Context.current();
 
-		template.postForEntity(endpoint+"/todos/"+toDo, null, String.class);
+			System.out.println("Context: "+context);
+			System.out.println("### Hallo");
 
-		
+			template.postForEntity(endpoint+"/todos/"+toDo, null, String.class);
+			todoChangeListener.apply("added", toDo);
 
-		span.end();
+		} finally {
+			span.end();
+		}
 
 		return "redirect:/";
 
@@ -135,10 +163,18 @@ public class TodouiApplication {
 
 		logger.info("POST "+ endpoint + "/todos/"+toDo);
 		template.delete(endpoint+"/todos/"+toDo);
+		todoChangeListener.apply("removed", toDo);
 		return "redirect:/";
 
 	}
 
+	static HttpEntity<Void> todoListRequest() {
+
+		HttpHeaders headers = new HttpHeaders();
+		headers.setAccept(List.of(MediaType.APPLICATION_CBOR, MediaType.APPLICATION_JSON));
+		return new HttpEntity<>(headers);
+	}
+
 	public static void main(String[] args) {
 		SpringApplication.run(TodouiApplication.class, args);
 	}
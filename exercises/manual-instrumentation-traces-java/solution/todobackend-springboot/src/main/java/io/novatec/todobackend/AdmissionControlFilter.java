@@ -0,0 +1,196 @@
+package io.novatec.todobackend;
+
+import static io.opentelemetry.api.common.AttributeKey.stringKey;
+
+import java.io.IOException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.DoubleUnaryOperator;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.Meter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Adaptive concurrency limit in front of all endpoints (AIMD). The limit grows
+ * by one per limit's worth of fast requests while it is actually used, and is
+ * cut when requests take longer than the target latency or fail because the
+ * connection pool or an executor is exhausted. Error responses of the
+ * application itself do not count as overload. Writes may only use part of
+ * the limit so reads keep being served first, health checks are always
+ * admitted.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+public class AdmissionControlFilter extends OncePerRequestFilter {
+
+	static final AttributeKey<String> PRIORITY = stringKey("todobackend.admission.priority");
+
+	enum Priority {
+		HEALTH, READ, WRITE
+	}
+
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final LongCounter shed;
+	private final Attributes readAttributes = Attributes.of(PRIORITY, "read");
+	private final Attributes writeAttributes = Attributes.of(PRIORITY, "write");
+
+	private final boolean enabled;
+	private final double minLimit;
+	private final double maxLimit;
+	private final long targetLatencyNanos;
+	private final double writeShare;
+	private final int retryAfterSeconds;
+
+	// the limit is a double kept as its bits, so no request takes a lock to read or adapt it
+	private final AtomicLong limitBits;
+	private final AtomicLong lastDecreaseNanos = new AtomicLong();
+
+	public AdmissionControlFilter(OpenTelemetry openTelemetry,
+			@Value("${todobackend.admission.enabled:true}") boolean enabled,
+			@Value("${todobackend.admission.initial-limit:20}") int initialLimit,
+			@Value("${todobackend.admission.min-limit:2}") int minLimit,
+			@Value("${todobackend.admission.max-limit:200}") int maxLimit,
+			@Value("${todobackend.admission.target-latency-ms:250}") long targetLatencyMillis,
+			@Value("${todobackend.admission.write-share:0.8}") double writeShare,
+			@Value("${todobackend.admission.retry-after-seconds:1}") int retryAfterSeconds) {
+
+		this.enabled = enabled;
+		this.limitBits = new AtomicLong(Double.doubleToRawLongBits(initialLimit));
+		this.minLimit = minLimit;
+		this.maxLimit = maxLimit;
+		this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(targetLatencyMillis);
+		this.writeShare = writeShare;
+		this.retryAfterSeconds = retryAfterSeconds;
+
+		Meter meter = openTelemetry.getMeter(AdmissionControlFilter.class.getName());
+
+		meter.gaugeBuilder("todobackend.admission.limit")
+				.setDescription("Current adaptive concurrency limit")
+				.setUnit("{request}")
+				.buildWithCallback(measurement -> measurement.record(limit()));
+
+		meter.upDownCounterBuilder("todobackend.admission.inflight")
+				.setDescription("Requests currently being processed")
+				.setUnit("{request}")
+				.buildWithCallback(measurement -> measurement.record(inFlight.get()));
+
+		shed = meter.counterBuilder("todobackend.admission.shed")
+				.setDescription("Requests rejected with 503 because the concurrency limit was reached")
+				.setUnit("{request}")
+				.build();
+	}
+
+	@Override
+	protected boolean shouldNotFilter(HttpServletRequest request) {
+
+		// the change feed holds its connection open and has its own subscriber limit
+		return !enabled || request.getRequestURI().startsWith("/todos/changes");
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+			throws ServletException, IOException {
+
+		Priority priority = priority(request);
+		if (priority == Priority.HEALTH) {
+			filterChain.doFilter(request, response);
+			return;
+		}
+
+		if (!tryAcquire(priority)) {
+			shed.add(1, priority == Priority.READ ? readAttributes : writeAttributes);
+			response.setHeader(HttpHeaders.RETRY_AFTER, Integer.toString(retryAfterSeconds));
+			response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Overloaded, retry later");
+			return;
+		}
+
+		long start = System.nanoTime();
+		boolean saturated = false;
+		try {
+			filterChain.doFilter(request, response);
+		} catch (IOException | ServletException | RuntimeException e) {
+			saturated = saturated(e);
+			throw e;
+		} finally {
+			int concurrency = inFlight.getAndDecrement();
+			long now = System.nanoTime();
+			onComplete(now - start, concurrency, saturated, now);
+		}
+	}
+
+	// a pool timeout the application handled itself still shows up as latency, it takes longer than any target
+	static boolean saturated(Throwable error) {
+
+		for (Throwable cause = error; cause != null; cause = cause.getCause() == cause ? null : cause.getCause()) {
+			if (cause instanceof SQLTransientConnectionException || cause instanceof RejectedExecutionException)
+				return true;
+		}
+		return false;
+	}
+
+	static Priority priority(HttpServletRequest request) {
+
+		if (request.getRequestURI().startsWith("/actuator/health"))
+			return Priority.HEALTH;
+		String method = request.getMethod();
+		return "GET".equals(method) || "HEAD".equals(method) || "OPTIONS".equals(method) ? Priority.READ
+				: Priority.WRITE;
+	}
+
+	private boolean tryAcquire(Priority priority) {
+
+		double limit = limit();
+		int allowed = (int) Math.max(1, priority == Priority.WRITE ? limit * writeShare : limit);
+		while (true) {
+			int current = inFlight.get();
+			if (current >= allowed)
+				return false;
+			if (inFlight.compareAndSet(current, current + 1))
+				return true;
+		}
+	}
+
+	void onComplete(long latencyNanos, int concurrency, boolean saturated, long now) {
+
+		if (saturated || latencyNanos > targetLatencyNanos) {
+			// one cut per latency window, requests that were already queued behind the overload do not count twice
+			long lastDecrease = lastDecreaseNanos.get();
+			if (now - lastDecrease > targetLatencyNanos && lastDecreaseNanos.compareAndSet(lastDecrease, now))
+				updateLimit(limit -> Math.max(minLimit, limit * 0.9));
+		} else if (concurrency * 2 >= limit()) {
+			updateLimit(limit -> Math.min(maxLimit, limit + 1 / limit));
+		}
+	}
+
+	private void updateLimit(DoubleUnaryOperator update) {
+
+		while (true) {
+			long bits = limitBits.get();
+			double updated = update.applyAsDouble(Double.longBitsToDouble(bits));
+			if (limitBits.compareAndSet(bits, Double.doubleToRawLongBits(updated)))
+				return;
+		}
+	}
+
+	double limit() {
+		return Double.longBitsToDouble(limitBits.get());
+	}
+
+}
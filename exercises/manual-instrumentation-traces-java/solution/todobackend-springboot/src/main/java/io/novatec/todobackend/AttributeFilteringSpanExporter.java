@@ -0,0 +1,96 @@
+package io.novatec.todobackend;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.data.DelegatingSpanData;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+
+/**
+ * Removes span attributes by key before the spans are exported. The set of
+ * dropped keys can be replaced at any time and applies from the next export
+ * on.
+ */
+public class AttributeFilteringSpanExporter implements SpanExporter {
+
+	private final SpanExporter delegate;
+	private volatile Set<String> droppedKeys;
+
+	public AttributeFilteringSpanExporter(SpanExporter delegate, Set<String> droppedKeys) {
+
+		this.delegate = delegate;
+		this.droppedKeys = Set.copyOf(droppedKeys);
+	}
+
+	public Set<String> getDroppedKeys() {
+		return droppedKeys;
+	}
+
+	public void setDroppedKeys(Set<String> droppedKeys) {
+		this.droppedKeys = Set.copyOf(droppedKeys);
+	}
+
+	/**
+	 * Parses attribute keys separated by commas.
+	 */
+	static Set<String> parseKeys(String keys) {
+
+		return Arrays.stream(keys.split(","))
+				.map(String::trim)
+				.filter(key -> !key.isEmpty())
+				.collect(Collectors.toSet());
+	}
+
+	@Override
+	public CompletableResultCode export(Collection<SpanData> spans) {
+
+		Set<String> dropped = droppedKeys;
+		if (dropped.isEmpty())
+			return delegate.export(spans);
+
+		List<SpanData> filtered = new ArrayList<>(spans.size());
+		for (SpanData span : spans)
+			filtered.add(filter(span, dropped));
+		return delegate.export(filtered);
+	}
+
+	private static SpanData filter(SpanData span, Set<String> dropped) {
+
+		Attributes attributes = span.getAttributes().toBuilder()
+				.removeIf(key -> dropped.contains(key.getKey()))
+				.build();
+		int removed = span.getAttributes().size() - attributes.size();
+		if (removed == 0)
+			return span;
+		return new DelegatingSpanData(span) {
+
+			@Override
+			public Attributes getAttributes() {
+				return attributes;
+			}
+
+			@Override
+			public int getTotalAttributeCount() {
+				return span.getTotalAttributeCount() - removed;
+			}
+		};
+	}
+
+	@Override
+	public CompletableResultCode flush() {
+		return delegate.flush();
+	}
+
+	@Override
+	public CompletableResultCode shutdown() {
+		return delegate.shutdown();
+	}
+
+}
@@ -0,0 +1,147 @@
+package io.novatec.todobackend;
+
+import static io.opentelemetry.api.common.AttributeKey.stringKey;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import io.grpc.ForwardingServerCallListener.SimpleForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.baggage.Baggage;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.ContextKey;
+import io.opentelemetry.context.Scope;
+
+/**
+ * Reads the caller's time budget from the baggage entry the UI sets and stops
+ * work once the caller has given up on it. The budget is counted down from the
+ * arrival of the request on this host's monotonic clock, so the clocks of
+ * caller and backend do not need to agree.
+ */
+@Component
+public class Deadline {
+
+	static final String BUDGET_KEY = "todo.budget_ms";
+	static final AttributeKey<String> STAGE = stringKey("todobackend.deadline.stage");
+
+	private static final ContextKey<Long> DEADLINE_NANOS = ContextKey.named("todobackend.deadline");
+
+	private final LongCounter abandoned;
+
+	public Deadline(OpenTelemetry openTelemetry) {
+
+		abandoned = openTelemetry.getMeter(Deadline.class.getName())
+				.counterBuilder("todobackend.deadline.abandoned")
+				.setDescription("Operations that were not started or not finished because the caller's deadline had passed")
+				.setUnit("{operation}")
+				.build();
+	}
+
+	/**
+	 * Starts the countdown of the budget in the baggage of an incoming request.
+	 */
+	static Context start(Context context) {
+
+		String budget = Baggage.fromContext(context).getEntryValue(BUDGET_KEY);
+		if (budget == null)
+			return context;
+		try {
+			return context.with(DEADLINE_NANOS, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Long.parseLong(budget)));
+		} catch (NumberFormatException e) {
+			return context;
+		}
+	}
+
+	void check(String stage) {
+
+		Long deadline = Context.current().get(DEADLINE_NANOS);
+		if (deadline == null)
+			return;
+
+		long remaining = deadline - System.nanoTime();
+		if (remaining < 0) {
+			abandoned.add(1, Attributes.of(STAGE, stage));
+			throw new DeadlineExceededException(stage, TimeUnit.NANOSECONDS.toMillis(-remaining));
+		}
+	}
+
+	void sleep(String stage, long millis) throws InterruptedException {
+
+		// long waits are sliced, so an expired caller is noticed within a tenth of a second
+		long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+		for (long left = millis; left > 0; left = TimeUnit.NANOSECONDS.toMillis(end - System.nanoTime())) {
+			check(stage);
+			Thread.sleep(Math.min(left, 100));
+		}
+	}
+
+	/**
+	 * Starts the countdown for gRPC calls. Registered inside the OpenTelemetry
+	 * interceptor, which makes the extracted baggage current.
+	 */
+	static ServerInterceptor serverInterceptor() {
+
+		return new ServerInterceptor() {
+
+			@Override
+			public <Q, R> ServerCall.Listener<Q> interceptCall(ServerCall<Q, R> call, Metadata headers,
+					ServerCallHandler<Q, R> next) {
+
+				Context context = start(Context.current());
+				ServerCall.Listener<Q> listener;
+				try (Scope scope = context.makeCurrent()) {
+					listener = next.startCall(call, headers);
+				}
+				return new SimpleForwardingServerCallListener<>(listener) {
+
+					@Override
+					public void onMessage(Q message) {
+						try (Scope scope = context.makeCurrent()) {
+							super.onMessage(message);
+						}
+					}
+
+					@Override
+					public void onHalfClose() {
+						try (Scope scope = context.makeCurrent()) {
+							super.onHalfClose();
+						}
+					}
+
+					@Override
+					public void onCancel() {
+						try (Scope scope = context.makeCurrent()) {
+							super.onCancel();
+						}
+					}
+
+					@Override
+					public void onComplete() {
+						try (Scope scope = context.makeCurrent()) {
+							super.onComplete();
+						}
+					}
+				};
+			}
+		};
+	}
+
+	@ResponseStatus(HttpStatus.GATEWAY_TIMEOUT)
+	static class DeadlineExceededException extends RuntimeException {
+
+		DeadlineExceededException(String stage, long overdueMillis) {
+			super("Deadline exceeded " + overdueMillis + " ms before " + stage);
+		}
+	}
+
+}
@@ -0,0 +1,149 @@
+package io.novatec.todobackend;
+
+import static io.opentelemetry.api.common.AttributeKey.longKey;
+import static io.opentelemetry.api.common.AttributeKey.stringKey;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.common.AttributesBuilder;
+import io.opentelemetry.api.logs.Logger;
+import io.opentelemetry.api.logs.Severity;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.semconv.ExceptionAttributes;
+
+/**
+ * Records exceptions on spans without repeating the same stack trace in every
+ * span. The stack trace, including its causes, is fingerprinted by exception
+ * types and frames (not messages). The first occurrence of a fingerprint, and
+ * then at most one per interval, is written in full as an ERROR log record
+ * together with the number of occurrences since the last one. The span event
+ * carries the fingerprint and the top frames only.
+ */
+@Component
+public class ExceptionRecorder {
+
+	static final AttributeKey<String> EXCEPTION_FINGERPRINT = stringKey("exception.fingerprint");
+	static final AttributeKey<Long> EXCEPTION_OCCURRENCES = longKey("exception.occurrences");
+
+	// cause chains can be cyclic
+	private static final int MAX_CAUSES = 16;
+
+	private final Logger logger;
+	private final long intervalMillis;
+	private final int maxFrames;
+	private final Map<Long, Occurrences> seen;
+
+	public ExceptionRecorder(OpenTelemetry openTelemetry,
+			@Value("${todobackend.exceptions.full-trace-interval-seconds:300}") long intervalSeconds,
+			@Value("${todobackend.exceptions.max-frames:5}") int maxFrames,
+			@Value("${todobackend.exceptions.max-fingerprints:1000}") int maxFingerprints) {
+
+		this.logger = openTelemetry.getLogsBridge().get(ExceptionRecorder.class.getName());
+		this.intervalMillis = TimeUnit.SECONDS.toMillis(intervalSeconds);
+		this.maxFrames = maxFrames;
+		// an evicted fingerprint is written in full again on its next occurrence
+		this.seen = new LinkedHashMap<>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, Occurrences> eldest) {
+				return size() > maxFingerprints;
+			}
+		};
+	}
+
+	/**
+	 * Adds an {@code exception} event to the span, the equivalent of
+	 * {@link Span#recordException(Throwable)}.
+	 */
+	public void record(Span span, Throwable exception) {
+
+		long fingerprint = fingerprint(exception);
+		String id = Long.toHexString(fingerprint);
+		long now = System.currentTimeMillis();
+		long occurrences;
+		synchronized (seen) {
+			Occurrences entry = seen.computeIfAbsent(fingerprint, k -> new Occurrences());
+			entry.count++;
+			occurrences = now - entry.lastFull >= intervalMillis ? entry.count : 0;
+			if (occurrences > 0) {
+				entry.lastFull = now;
+				entry.count = 0;
+			}
+		}
+
+		if (occurrences > 0) {
+			StringWriter stackTrace = new StringWriter();
+			exception.printStackTrace(new PrintWriter(stackTrace));
+			logger.logRecordBuilder()
+					.setContext(Context.current().with(span))
+					.setTimestamp(now, TimeUnit.MILLISECONDS)
+					.setSeverity(Severity.ERROR)
+					.setSeverityText(Severity.ERROR.name())
+					.setBody(exception.toString())
+					.setAttribute(ExceptionAttributes.EXCEPTION_TYPE, exception.getClass().getName())
+					.setAttribute(ExceptionAttributes.EXCEPTION_STACKTRACE, stackTrace.toString())
+					.setAttribute(EXCEPTION_FINGERPRINT, id)
+					.setAttribute(EXCEPTION_OCCURRENCES, occurrences)
+					.emit();
+		}
+
+		AttributesBuilder attributes = Attributes.builder()
+				.put(ExceptionAttributes.EXCEPTION_TYPE, exception.getClass().getName())
+				.put(ExceptionAttributes.EXCEPTION_STACKTRACE, truncated(exception, id))
+				.put(EXCEPTION_FINGERPRINT, id);
+		if (exception.getMessage() != null)
+			attributes.put(ExceptionAttributes.EXCEPTION_MESSAGE, exception.getMessage());
+		span.addEvent("exception", attributes.build());
+	}
+
+	static long fingerprint(Throwable exception) {
+
+		long hash = 0xcbf29ce484222325L;
+		Throwable t = exception;
+		for (int depth = 0; t != null && depth <= MAX_CAUSES; depth++, t = t.getCause()) {
+			hash = (hash ^ t.getClass().getName().hashCode()) * 0x100000001b3L;
+			for (StackTraceElement frame : t.getStackTrace()) {
+				hash = (hash ^ frame.getClassName().hashCode()) * 0x100000001b3L;
+				hash = (hash ^ frame.getMethodName().hashCode()) * 0x100000001b3L;
+				hash = (hash ^ frame.getLineNumber()) * 0x100000001b3L;
+			}
+		}
+		return hash;
+	}
+
+	/**
+	 * The top frames of the exception and one line per cause, in the layout of
+	 * {@link Throwable#printStackTrace()}.
+	 */
+	private String truncated(Throwable exception, String id) {
+
+		StringBuilder builder = new StringBuilder(exception.toString());
+		StackTraceElement[] frames = exception.getStackTrace();
+		for (int i = 0; i < Math.min(frames.length, maxFrames); i++)
+			builder.append("\n\tat ").append(frames[i]);
+		if (frames.length > maxFrames)
+			builder.append("\n\t... ").append(frames.length - maxFrames).append(" more");
+		Throwable cause = exception.getCause();
+		for (int depth = 0; cause != null && depth < MAX_CAUSES; depth++, cause = cause.getCause())
+			builder.append("\nCaused by: ").append(cause);
+		return builder.append("\n\t(full trace in log record with exception.fingerprint=").append(id).append(')')
+				.toString();
+	}
+
+	private static class Occurrences {
+
+		long lastFull = Long.MIN_VALUE / 2;
+		long count;
+	}
+
+}
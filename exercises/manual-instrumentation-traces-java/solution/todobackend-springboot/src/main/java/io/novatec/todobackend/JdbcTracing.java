@@ -0,0 +1,497 @@
+package io.novatec.todobackend;
+
+import static io.opentelemetry.api.common.AttributeKey.doubleKey;
+import static io.opentelemetry.api.common.AttributeKey.longKey;
+import static io.opentelemetry.api.common.AttributeKey.stringKey;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.logs.Logger;
+import io.opentelemetry.api.logs.Severity;
+import io.opentelemetry.api.metrics.DoubleHistogram;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanBuilder;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+
+@Configuration
+public class JdbcTracing {
+
+	static final AttributeKey<String> DB_SYSTEM = stringKey("db.system");
+	static final AttributeKey<String> DB_QUERY_TEXT = stringKey("db.query.text");
+	static final AttributeKey<String> DB_OPERATION_NAME = stringKey("db.operation.name");
+	static final AttributeKey<String> DB_COLLECTION_NAME = stringKey("db.collection.name");
+	static final AttributeKey<Long> DB_BATCH_SIZE = longKey("db.operation.batch.size");
+	static final AttributeKey<Long> DB_RETURNED_ROWS = longKey("db.response.returned_rows");
+	static final AttributeKey<Long> DB_AFFECTED_ROWS = longKey("db.response.affected_rows");
+	static final AttributeKey<String> DB_QUERY_FINGERPRINT = stringKey("db.query.fingerprint");
+	static final AttributeKey<String> DB_QUERY_PARAMETERS = stringKey("db.query.parameter_shapes");
+	static final AttributeKey<Double> DB_DURATION = doubleKey("db.client.operation.duration_ms");
+
+	static final String OTHER_FINGERPRINT = "other";
+
+	static final String[] OPERATIONS = { "select", "insert", "update", "delete", "merge" };
+
+	private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+	private static final Pattern NUMERIC_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+	private static final Pattern IN_LIST = Pattern.compile("\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\)");
+	private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+	private static final Pattern COLLECTION = Pattern.compile("\\b(?:from|into|update|merge into)\\s+([\\w.]+)",
+			Pattern.CASE_INSENSITIVE);
+	private static final int MAX_QUERY_LENGTH = 2048;
+
+	@Bean
+	static BeanPostProcessor jdbcTracingInstaller(ObjectProvider<OpenTelemetry> openTelemetry, Environment environment) {
+
+		return new BeanPostProcessor() {
+
+			@Override
+			public Object postProcessAfterInitialization(Object bean, String beanName) {
+				if (bean instanceof DataSource dataSource && !(bean instanceof TracingDataSource)
+						&& environment.getProperty("todobackend.jdbc.tracing.enabled", Boolean.class, true))
+					return new TracingDataSource(dataSource, openTelemetry, environment);
+				return bean;
+			}
+		};
+	}
+
+	static String operation(String sql) {
+
+		String trimmed = sql.stripLeading();
+		for (String operation : OPERATIONS) {
+			if (trimmed.regionMatches(true, 0, operation, 0, operation.length()))
+				return operation;
+		}
+		return "other";
+	}
+
+	static String sanitize(String sql) {
+
+		String sanitized = NUMERIC_LITERAL.matcher(STRING_LITERAL.matcher(sql).replaceAll("?")).replaceAll("?");
+		return sanitized.length() > MAX_QUERY_LENGTH ? sanitized.substring(0, MAX_QUERY_LENGTH) : sanitized;
+	}
+
+	static String shapes(List<Object> parameters) {
+
+		StringBuilder shapes = new StringBuilder("[");
+		for (int i = 0; i < parameters.size(); i++) {
+			Object parameter = parameters.get(i);
+			if (i > 0)
+				shapes.append(", ");
+			if (parameter == null) {
+				shapes.append("null");
+			} else if (parameter instanceof CharSequence text) {
+				shapes.append("String(").append(text.length()).append(')');
+			} else if (parameter instanceof byte[] bytes) {
+				shapes.append("byte[").append(bytes.length).append(']');
+			} else {
+				shapes.append(parameter.getClass().getSimpleName());
+			}
+		}
+		return shapes.append(']').toString();
+	}
+
+	static class TracingDataSource extends DelegatingDataSource implements AutoCloseable {
+
+		private final ObjectProvider<OpenTelemetry> openTelemetry;
+		private final double[] sampleRates = new double[OPERATIONS.length + 1];
+		private final long minDurationNanos;
+		private final long slowQueryNanos;
+		private final int maxFingerprints;
+
+		// bounded by distinct SQL strings, which Hibernate keeps to a handful per entity
+		private final Map<String, Fingerprint> fingerprints = new ConcurrentHashMap<>();
+		// statements past the limit share the other fingerprint, their sanitized text is only kept for the most recent
+		private final Map<String, Fingerprint> others = Collections.synchronizedMap(
+				new LinkedHashMap<>(16, 0.75f, true) {
+
+					@Override
+					protected boolean removeEldestEntry(Map.Entry<String, Fingerprint> eldest) {
+						return size() > maxFingerprints;
+					}
+				});
+
+		private volatile Tracer tracer;
+		private volatile Logger slowQueryLogger;
+		private volatile DoubleHistogram duration;
+		private volatile String dbSystem;
+
+		TracingDataSource(DataSource dataSource, ObjectProvider<OpenTelemetry> openTelemetry, Environment environment) {
+
+			super(dataSource);
+			this.openTelemetry = openTelemetry;
+			for (int i = 0; i < OPERATIONS.length; i++)
+				sampleRates[i] = environment.getProperty("todobackend.jdbc.tracing.sample-rate." + OPERATIONS[i],
+						Double.class, 1.0);
+			sampleRates[OPERATIONS.length] = environment.getProperty("todobackend.jdbc.tracing.sample-rate.other",
+					Double.class, 1.0);
+			this.minDurationNanos = TimeUnit.MILLISECONDS.toNanos(
+					environment.getProperty("todobackend.jdbc.tracing.min-duration-ms", Long.class, 0L));
+			this.slowQueryNanos = TimeUnit.MILLISECONDS.toNanos(
+					environment.getProperty("todobackend.jdbc.slow-query.threshold-ms", Long.class, 100L));
+			this.maxFingerprints = environment.getProperty("todobackend.jdbc.max-fingerprints", Integer.class, 100);
+		}
+
+		@Override
+		public Connection getConnection() throws SQLException {
+			return wrap(super.getConnection());
+		}
+
+		@Override
+		public Connection getConnection(String username, String password) throws SQLException {
+			return wrap(super.getConnection(username, password));
+		}
+
+		@Override
+		public void close() throws Exception {
+
+			// the wrapper replaces the pool as the bean, so it has to pass on the shutdown
+			if (getTargetDataSource() instanceof AutoCloseable closeable)
+				closeable.close();
+		}
+
+		private Connection wrap(Connection connection) throws SQLException {
+
+			if (dbSystem == null) {
+				String url = connection.getMetaData().getURL();
+				dbSystem = url != null && url.startsWith("jdbc:") ? url.substring(5, url.indexOf(':', 5)) : "other_sql";
+			}
+			return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Connection.class },
+					new ConnectionHandler(connection));
+		}
+
+		Execution start(String sql, int batchSize, List<Object> parameters) {
+
+			if (sql == null)
+				return null;
+
+			Fingerprint fingerprint = fingerprints.get(sql);
+			if (fingerprint == null)
+				fingerprint = others.get(sql);
+			if (fingerprint == null)
+				fingerprint = fingerprint(sql);
+
+			// statements outside of a trace, such as schema updates at startup, are not worth a root span
+			Context parent = Context.current();
+			double sampleRate = sampleRates[operationIndex(fingerprint.operation)];
+			boolean traced = Span.fromContext(parent).getSpanContext().isValid() && sampleRate > 0
+					&& (sampleRate >= 1 || ThreadLocalRandom.current().nextDouble() < sampleRate);
+
+			return new Execution(parent, fingerprint, batchSize, parameters, traced, System.nanoTime());
+		}
+
+		private Fingerprint fingerprint(String sql) {
+
+			String sanitized = sanitize(sql);
+			String operation = operation(sanitized);
+			Matcher collection = COLLECTION.matcher(sanitized);
+			String collectionName = collection.find() ? collection.group(1) : null;
+
+			// IN lists of different lengths and formatting differences share a fingerprint
+			String normalized = WHITESPACE.matcher(IN_LIST.matcher(sanitized).replaceAll("(?)")).replaceAll(" ").trim();
+			boolean cached = fingerprints.size() < maxFingerprints;
+			String id = cached ? String.format("%08x", normalized.toLowerCase(Locale.ROOT).hashCode()) : OTHER_FINGERPRINT;
+
+			var attributes = Attributes.builder()
+					.put(DB_SYSTEM, dbSystem)
+					.put(DB_OPERATION_NAME, operation)
+					.put(DB_QUERY_FINGERPRINT, id);
+			if (collectionName != null && cached)
+				attributes.put(DB_COLLECTION_NAME, collectionName);
+
+			Fingerprint fingerprint = new Fingerprint(id, sanitized, operation, collectionName, attributes.build());
+			if (cached)
+				fingerprints.putIfAbsent(sql, fingerprint);
+			else
+				others.put(sql, fingerprint);
+			return fingerprint;
+		}
+
+		void end(Execution execution, long rows, Throwable error) {
+
+			long duration = System.nanoTime() - execution.startNanos;
+			Fingerprint fingerprint = execution.fingerprint;
+
+			DoubleHistogram histogram = this.duration;
+			if (histogram == null)
+				this.duration = histogram = openTelemetry.getObject().getMeter(JdbcTracing.class.getName())
+						.histogramBuilder("db.client.operation.duration")
+						.setDescription("Duration of JDBC statements per statement fingerprint")
+						.setUnit("ms")
+						.build();
+			histogram.record(duration / 1_000_000.0, fingerprint.attributes);
+
+			if (duration >= slowQueryNanos)
+				reportSlowQuery(execution, duration);
+
+			if (!execution.traced || (duration < minDurationNanos && error == null))
+				return;
+
+			Tracer tracer = this.tracer;
+			if (tracer == null)
+				this.tracer = tracer = openTelemetry.getObject().getTracer(JdbcTracing.class.getName(), "0.1.0");
+
+			// the span is only created once the statement turned out to be worth it, backdated to its start
+			Instant end = Instant.now();
+			SpanBuilder builder = tracer.spanBuilder(fingerprint.operation.toUpperCase(Locale.ROOT)
+					+ (fingerprint.collection != null ? " " + fingerprint.collection : ""))
+					.setParent(execution.parent)
+					.setSpanKind(SpanKind.CLIENT)
+					.setStartTimestamp(end.minusNanos(duration))
+					.setAttribute(DB_SYSTEM, dbSystem)
+					.setAttribute(DB_OPERATION_NAME, fingerprint.operation)
+					.setAttribute(DB_QUERY_TEXT, fingerprint.sql)
+					.setAttribute(DB_QUERY_FINGERPRINT, fingerprint.id);
+			if (fingerprint.collection != null)
+				builder.setAttribute(DB_COLLECTION_NAME, fingerprint.collection);
+			if (execution.batchSize > 1)
+				builder.setAttribute(DB_BATCH_SIZE, (long) execution.batchSize);
+			if (rows >= 0)
+				builder.setAttribute(fingerprint.operation.equals("select") ? DB_RETURNED_ROWS : DB_AFFECTED_ROWS, rows);
+
+			Span span = builder.startSpan();
+			if (error != null) {
+				span.setStatus(StatusCode.ERROR, error.getMessage());
+				span.recordException(error);
+			}
+			span.end(end);
+		}
+
+		private void reportSlowQuery(Execution execution, long duration) {
+
+			Attributes attributes = Attributes.builder()
+					.put(DB_QUERY_TEXT, execution.fingerprint.sql)
+					.put(DB_QUERY_FINGERPRINT, execution.fingerprint.id)
+					.put(DB_QUERY_PARAMETERS, execution.parameters == null ? "[]" : shapes(execution.parameters))
+					.put(DB_DURATION, duration / 1_000_000.0)
+					.build();
+
+			Span.fromContext(execution.parent).addEvent("slow query", attributes);
+
+			Logger logger = slowQueryLogger;
+			if (logger == null)
+				slowQueryLogger = logger = openTelemetry.getObject().getLogsBridge().get(JdbcTracing.class.getName());
+			logger.logRecordBuilder()
+					.setContext(execution.parent)
+					.setSeverity(Severity.WARN)
+					.setSeverityText("WARN")
+					.setBody(String.format("Slow query took %.1f ms: %s", duration / 1_000_000.0, execution.fingerprint.sql))
+					.setAllAttributes(attributes)
+					.emit();
+		}
+
+		private static int operationIndex(String operation) {
+
+			for (int i = 0; i < OPERATIONS.length; i++) {
+				if (OPERATIONS[i].equals(operation))
+					return i;
+			}
+			return OPERATIONS.length;
+		}
+
+		private class ConnectionHandler implements InvocationHandler {
+
+			private final Connection connection;
+
+			ConnectionHandler(Connection connection) {
+				this.connection = connection;
+			}
+
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+
+				Object result = invokeTarget(connection, method, args);
+				return switch (method.getName()) {
+				case "createStatement" -> wrap(Statement.class, (Statement) result, null);
+				case "prepareStatement" -> wrap(PreparedStatement.class, (Statement) result, (String) args[0]);
+				case "prepareCall" -> wrap(CallableStatement.class, (Statement) result, (String) args[0]);
+				default -> result;
+				};
+			}
+
+			private Object wrap(Class<? extends Statement> type, Statement statement, String sql) {
+				return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { type },
+						new StatementHandler(statement, sql));
+			}
+		}
+
+		private class StatementHandler implements InvocationHandler {
+
+			private final Statement statement;
+			private final String preparedSql;
+			private final List<Object> parameters;
+			private String batchSql;
+			private int batchSize;
+			private ResultSetHandler openResultSet;
+
+			StatementHandler(Statement statement, String preparedSql) {
+				this.statement = statement;
+				this.preparedSql = preparedSql;
+				this.parameters = preparedSql != null ? new ArrayList<>() : null;
+			}
+
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+
+				String name = method.getName();
+				if (parameters != null && name.startsWith("set") && args != null && args.length >= 2
+						&& args[0] instanceof Integer index) {
+					// only the value is kept, its shape is computed when the statement turns out to be slow
+					while (parameters.size() < index)
+						parameters.add(null);
+					parameters.set(index - 1, name.equals("setNull") ? null : args[1]);
+				} else if (parameters != null && name.equals("clearParameters")) {
+					parameters.clear();
+				} else if (name.equals("addBatch")) {
+					batchSize++;
+					if (batchSql == null && args != null && args.length == 1)
+						batchSql = (String) args[0];
+				} else if (name.equals("clearBatch")) {
+					batchSize = 0;
+					batchSql = null;
+				}
+				// closing the statement, or executing it again, closes its result set
+				if (name.equals("close") || name.startsWith("execute"))
+					endResultSet();
+				if (!name.startsWith("execute"))
+					return invokeTarget(statement, method, args);
+
+				boolean batch = name.startsWith("executeBatch") || name.startsWith("executeLargeBatch");
+				String sql = args != null && args.length > 0 && args[0] instanceof String s ? s
+						: preparedSql != null ? preparedSql : batchSql;
+				Execution execution = start(sql, batch ? batchSize : 1, parameters);
+				if (batch) {
+					batchSize = 0;
+					batchSql = null;
+				}
+				if (execution == null)
+					return invokeTarget(statement, method, args);
+
+				Object result;
+				try {
+					result = invokeTarget(statement, method, args);
+				} catch (Throwable t) {
+					end(execution, -1, t);
+					throw t;
+				}
+
+				if (result instanceof ResultSet resultSet) {
+					openResultSet = new ResultSetHandler(resultSet, execution);
+					return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { ResultSet.class },
+							openResultSet);
+				}
+				end(execution, rows(result), null);
+				return result;
+			}
+
+			private void endResultSet() {
+
+				if (openResultSet != null) {
+					openResultSet.end();
+					openResultSet = null;
+				}
+			}
+
+			private long rows(Object result) {
+
+				if (result instanceof Number count)
+					return count.longValue();
+				long rows = -1;
+				if (result instanceof int[] counts) {
+					for (int count : counts)
+						rows = count >= 0 ? Math.max(rows, 0) + count : rows;
+				} else if (result instanceof long[] counts) {
+					for (long count : counts)
+						rows = count >= 0 ? Math.max(rows, 0) + count : rows;
+				}
+				return rows;
+			}
+		}
+
+		private class ResultSetHandler implements InvocationHandler {
+
+			private final ResultSet resultSet;
+			private final Execution execution;
+			private long rows;
+			private boolean ended;
+
+			ResultSetHandler(ResultSet resultSet, Execution execution) {
+				this.resultSet = resultSet;
+				this.execution = execution;
+			}
+
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+
+				// the query span covers fetching the rows, so it ends when the result set or its statement is closed
+				Object result = invokeTarget(resultSet, method, args);
+				if (method.getName().equals("next") && Boolean.TRUE.equals(result)) {
+					rows++;
+				} else if (method.getName().equals("close")) {
+					end();
+				}
+				return result;
+			}
+
+			void end() {
+
+				if (!ended) {
+					ended = true;
+					TracingDataSource.this.end(execution, rows, null);
+				}
+			}
+		}
+	}
+
+	record Fingerprint(String id, String sql, String operation, String collection, Attributes attributes) {
+	}
+
+	record Execution(Context parent, Fingerprint fingerprint, int batchSize, List<Object> parameters, boolean traced,
+			long startNanos) {
+	}
+
+	private static Object invokeTarget(Object target, Method method, Object[] args) throws Throwable {
+
+		try {
+			return method.invoke(target, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+
+}
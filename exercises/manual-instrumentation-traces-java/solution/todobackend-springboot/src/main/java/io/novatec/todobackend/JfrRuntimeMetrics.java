@@ -0,0 +1,197 @@
+package io.novatec.todobackend;
+
+import static io.opentelemetry.api.common.AttributeKey.stringKey;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.DoubleHistogram;
+import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.Meter;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.context.Context;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedClass;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedThread;
+import jdk.jfr.consumer.RecordingStream;
+
+/**
+ * Streams JDK Flight Recorder events in-process and publishes them as metrics:
+ * GC pauses, allocation, thread parking, monitor contention, safepoints and
+ * CPU load. Parking and contention measurements carry the span that was active
+ * on the blocked thread as exemplar.
+ */
+@Component
+public class JfrRuntimeMetrics {
+
+	static final AttributeKey<String> GC_NAME = stringKey("jvm.gc.name");
+	static final AttributeKey<String> GC_CAUSE = stringKey("jvm.gc.cause");
+	static final AttributeKey<String> MONITOR_CLASS = stringKey("jvm.monitor.class");
+	static final AttributeKey<String> VM_OPERATION = stringKey("jvm.vm.operation");
+
+	private Logger logger = LoggerFactory.getLogger(JfrRuntimeMetrics.class);
+
+	private final ThreadSpanTracker threadSpanTracker;
+	private final Map<String, Attributes> attributes = new ConcurrentHashMap<>();
+
+	private final DoubleHistogram gcPause;
+	private final LongCounter allocated;
+	private final DoubleHistogram parkDuration;
+	private final DoubleHistogram contentionDuration;
+	private final DoubleHistogram safepointSync;
+	private final DoubleHistogram safepointOperation;
+
+	private volatile double jvmCpu = Double.NaN;
+	private volatile double machineCpu = Double.NaN;
+
+	private RecordingStream stream;
+
+	@Value("${todobackend.jfr.enabled:true}")
+	boolean enabled;
+
+	@Value("${todobackend.jfr.threshold-ms:10}")
+	long thresholdMillis;
+
+	public JfrRuntimeMetrics(OpenTelemetry openTelemetry, ThreadSpanTracker threadSpanTracker) {
+
+		this.threadSpanTracker = threadSpanTracker;
+
+		Meter meter = openTelemetry.getMeter(JfrRuntimeMetrics.class.getName());
+
+		gcPause = meter.histogramBuilder("jvm.gc.pause.duration")
+				.setDescription("Time application threads were stopped by a garbage collection")
+				.setUnit("ms")
+				.build();
+		allocated = meter.counterBuilder("jvm.memory.allocated")
+				.setDescription("Bytes allocated on the heap, estimated from JFR allocation samples")
+				.setUnit("By")
+				.build();
+		parkDuration = meter.histogramBuilder("jvm.thread.park.duration")
+				.setDescription("Time threads serving a span were parked, for parks above the threshold")
+				.setUnit("ms")
+				.build();
+		contentionDuration = meter.histogramBuilder("jvm.monitor.contention.duration")
+				.setDescription("Time threads waited to enter a contended monitor, above the threshold")
+				.setUnit("ms")
+				.build();
+		safepointSync = meter.histogramBuilder("jvm.safepoint.sync.duration")
+				.setDescription("Time it took to bring all threads to a safepoint")
+				.setUnit("ms")
+				.build();
+		safepointOperation = meter.histogramBuilder("jvm.safepoint.operation.duration")
+				.setDescription("Time spent in VM operations executed at a safepoint")
+				.setUnit("ms")
+				.build();
+
+		meter.gaugeBuilder("jvm.cpu.recent_utilization")
+				.setDescription("CPU utilization of the JVM process as reported by JFR")
+				.setUnit("1")
+				.buildWithCallback(measurement -> {
+					if (!Double.isNaN(jvmCpu))
+						measurement.record(jvmCpu);
+				});
+		meter.gaugeBuilder("system.cpu.utilization")
+				.setDescription("CPU utilization of the whole machine as reported by JFR")
+				.setUnit("1")
+				.buildWithCallback(measurement -> {
+					if (!Double.isNaN(machineCpu))
+						measurement.record(machineCpu);
+				});
+	}
+
+	@PostConstruct
+	public void start() {
+
+		if (!enabled)
+			return;
+
+		Duration threshold = Duration.ofMillis(thresholdMillis);
+		stream = new RecordingStream();
+		stream.setReuse(true);
+		stream.setOrdered(false);
+
+		stream.enable("jdk.GarbageCollection");
+		stream.enable("jdk.ObjectAllocationSample").with("throttle", "150/s");
+		stream.enable("jdk.ThreadPark").withThreshold(threshold).withoutStackTrace();
+		stream.enable("jdk.JavaMonitorEnter").withThreshold(threshold).withoutStackTrace();
+		stream.enable("jdk.SafepointBegin");
+		stream.enable("jdk.ExecuteVMOperation").withThreshold(Duration.ZERO);
+		stream.enable("jdk.CPULoad").withPeriod(Duration.ofSeconds(1));
+
+		stream.onEvent("jdk.GarbageCollection", event -> gcPause.record(millis(event.getDuration("sumOfPauses")),
+				attributes("gc:" + event.getString("name") + ":" + event.getString("cause"),
+						() -> Attributes.of(GC_NAME, event.getString("name"), GC_CAUSE, event.getString("cause")))));
+		stream.onEvent("jdk.ObjectAllocationSample", event -> allocated.add(event.getLong("weight")));
+		stream.onEvent("jdk.ThreadPark", this::onPark);
+		stream.onEvent("jdk.JavaMonitorEnter", this::onMonitorEnter);
+		stream.onEvent("jdk.SafepointBegin", event -> safepointSync.record(millis(event.getDuration())));
+		stream.onEvent("jdk.ExecuteVMOperation", event -> {
+			if (event.getBoolean("safepoint"))
+				safepointOperation.record(millis(event.getDuration()), attributes("op:" + event.getString("operation"),
+						() -> Attributes.of(VM_OPERATION, event.getString("operation"))));
+		});
+		stream.onEvent("jdk.CPULoad", event -> {
+			jvmCpu = event.getFloat("jvmUser") + event.getFloat("jvmSystem");
+			machineCpu = event.getFloat("machineTotal");
+		});
+
+		stream.startAsync();
+		logger.info("JFR runtime metrics streaming, blocking threshold " + thresholdMillis + " ms");
+	}
+
+	private void onPark(RecordedEvent event) {
+
+		// idle pool threads park all the time, only parks while serving a span say something about latency
+		Context context = spanContext(event);
+		if (context != null)
+			parkDuration.record(millis(event.getDuration()), Attributes.empty(), context);
+	}
+
+	private void onMonitorEnter(RecordedEvent event) {
+
+		RecordedClass monitorClass = event.getClass("monitorClass");
+		String name = monitorClass == null ? "unknown" : monitorClass.getName();
+		Context context = spanContext(event);
+		contentionDuration.record(millis(event.getDuration()),
+				attributes("monitor:" + name, () -> Attributes.of(MONITOR_CLASS, name)),
+				context != null ? context : Context.root());
+	}
+
+	private Context spanContext(RecordedEvent event) {
+
+		RecordedThread thread = event.getThread();
+		if (thread == null || thread.getJavaThreadId() < 0)
+			return null;
+		SpanContext span = threadSpanTracker.spanAt(thread.getJavaThreadId(), event.getStartTime().toEpochMilli());
+		return span == null ? null : Context.root().with(Span.wrap(span));
+	}
+
+	private Attributes attributes(String key, Supplier<Attributes> attributes) {
+		return this.attributes.computeIfAbsent(key, k -> attributes.get());
+	}
+
+	private static double millis(Duration duration) {
+		return duration.toNanos() / 1_000_000.0;
+	}
+
+	@PreDestroy
+	public void stop() {
+
+		if (stream != null)
+			stream.close();
+	}
+
+}
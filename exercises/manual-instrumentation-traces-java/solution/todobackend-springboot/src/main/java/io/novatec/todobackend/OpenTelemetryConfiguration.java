@@ -1,7 +1,10 @@
 package io.novatec.todobackend;
 
-import java.util.concurrent.TimeUnit;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.beans.factory.config.ConfigurableBeanFactory;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -10,52 +13,181 @@ import org.springframework.context.annotation.Scope;
 //Basic OTel API & SDK
 import io.opentelemetry.api.OpenTelemetry;
 import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.common.CompletableResultCode;
 import io.opentelemetry.sdk.resources.Resource;
 
 //Tracing and Spans
 import io.opentelemetry.sdk.trace.SdkTracerProvider;
-import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
 import io.opentelemetry.semconv.ServiceAttributes;
 
+//Metrics
+import io.opentelemetry.sdk.metrics.InstrumentType;
+import io.opentelemetry.sdk.metrics.SdkMeterProvider;
+import io.opentelemetry.sdk.metrics.data.AggregationTemporality;
+import io.opentelemetry.sdk.metrics.data.MetricData;
+import io.opentelemetry.sdk.metrics.export.MetricExporter;
+
+//Logs
+import io.opentelemetry.sdk.logs.SdkLoggerProvider;
+import io.opentelemetry.sdk.logs.export.BatchLogRecordProcessor;
+import io.opentelemetry.sdk.logs.export.LogRecordExporter;
+
 //Exporter
+import io.opentelemetry.exporter.logging.LoggingMetricExporter;
 import io.opentelemetry.exporter.logging.LoggingSpanExporter;
-import io.opentelemetry.exporter.otlp.trace.OtlpGrpcSpanExporter;
+import io.opentelemetry.exporter.logging.SystemOutLogRecordExporter;
+
+//gRPC
+import io.opentelemetry.instrumentation.grpc.v1_6.GrpcTelemetry;
 
 //Propagation
+import io.opentelemetry.api.baggage.propagation.W3CBaggagePropagator;
 import io.opentelemetry.api.trace.propagation.W3CTraceContextPropagator;
 import io.opentelemetry.context.propagation.ContextPropagators;
+import io.opentelemetry.context.propagation.TextMapPropagator;
 
 @Configuration
 public class OpenTelemetryConfiguration {
 
 	@Bean
 	@Scope(value = ConfigurableBeanFactory.SCOPE_SINGLETON)
-	public OpenTelemetry openTelemetry() {
+	public ThreadSpanTracker threadSpanTracker() {
+
+		return new ThreadSpanTracker();
+	}
+
+	@Bean
+	public ReconfigurableSampler reconfigurableSampler(
+			@Value("${todobackend.telemetry.sampler.ratio:1.0}") double ratio,
+			@Value("${todobackend.telemetry.sampler.rules:}") String rules) {
+
+		return new ReconfigurableSampler(ratio, ReconfigurableSampler.parseRules(rules));
+	}
+
+	// closed after the OpenTelemetry bean, which shuts the exporters down
+	@Bean
+	public OtlpExporterFactory otlpExporterFactory(
+			@Value("${otel.exporter.otlp.protocol:grpc}") String protocol,
+			@Value("${otel.exporter.otlp.endpoint:http://localhost:4317}") String endpoint,
+			@Value("${otel.exporter.otlp.compression:gzip}") String compression,
+			@Value("${otel.exporter.otlp.timeout:30000}") long timeoutMillis,
+			@Value("${todobackend.otlp.connect-timeout-ms:10000}") long connectTimeoutMillis,
+			@Value("${todobackend.otlp.worker-threads:2}") int workerThreads) {
+
+		return new OtlpExporterFactory(OtlpExporterFactory.parseProtocol(protocol), endpoint, compression,
+				Duration.ofMillis(timeoutMillis), Duration.ofMillis(connectTimeoutMillis), workerThreads);
+	}
+
+	// the reconfigurable parts are shut down with the providers that own them, not by the bean factory
+	@Bean(destroyMethod = "")
+	public AttributeFilteringSpanExporter attributeFilteringSpanExporter(OtlpExporterFactory otlpExporterFactory,
+			@Value("${todobackend.telemetry.dropped-attributes:}") String droppedAttributes) {
+
+		return new AttributeFilteringSpanExporter(
+				SpanExporter.composite(LoggingSpanExporter.create(), otlpExporterFactory.spanExporter()),
+				AttributeFilteringSpanExporter.parseKeys(droppedAttributes));
+	}
+
+	@Bean(destroyMethod = "")
+	public ReconfigurableBatchSpanProcessor reconfigurableBatchSpanProcessor(AttributeFilteringSpanExporter exporter,
+			@Value("${todobackend.telemetry.span-export-delay-ms:1000}") long scheduleDelayMillis) {
+
+		return new ReconfigurableBatchSpanProcessor(exporter, Duration.ofMillis(scheduleDelayMillis));
+	}
+
+	@Bean(destroyMethod = "")
+	public ReconfigurableMetricReader reconfigurableMetricReader(OtlpExporterFactory otlpExporterFactory,
+			@Value("${todobackend.telemetry.metric-export-interval-ms:10000}") long intervalMillis) {
+
+		// metrics are logged as before and exported over OTLP like the other signals
+		return new ReconfigurableMetricReader(
+				composite(LoggingMetricExporter.create(), otlpExporterFactory.metricExporter()),
+				Duration.ofMillis(intervalMillis));
+	}
+
+	// the SDK has composites for span and log record exporters only; both exporters here are cumulative
+	private static MetricExporter composite(MetricExporter first, MetricExporter second) {
+
+		return new MetricExporter() {
+
+			@Override
+			public AggregationTemporality getAggregationTemporality(InstrumentType instrumentType) {
+				return first.getAggregationTemporality(instrumentType);
+			}
+
+			@Override
+			public CompletableResultCode export(Collection<MetricData> metrics) {
+				return CompletableResultCode.ofAll(List.of(first.export(metrics), second.export(metrics)));
+			}
+
+			@Override
+			public CompletableResultCode flush() {
+				return CompletableResultCode.ofAll(List.of(first.flush(), second.flush()));
+			}
+
+			@Override
+			public CompletableResultCode shutdown() {
+				return CompletableResultCode.ofAll(List.of(first.shutdown(), second.shutdown()));
+			}
+		};
+	}
+
+	@Bean
+	@Scope(value = ConfigurableBeanFactory.SCOPE_SINGLETON)
+	public OpenTelemetry openTelemetry(ThreadSpanTracker threadSpanTracker, ReconfigurableSampler sampler,
+			ReconfigurableBatchSpanProcessor spanProcessor, ReconfigurableMetricReader metricReader,
+			OtlpExporterFactory otlpExporterFactory,
+			@Value("${todobackend.telemetry.drop-rules:}") String dropRules,
+			@Value("${todobackend.telemetry.resource-usage.sample-every:1}") int resourceUsageSampleEvery) {
 
 		Resource resource = Resource.getDefault().toBuilder()
 				.put(ServiceAttributes.SERVICE_NAME, "todobackend")
 				.put(ServiceAttributes.SERVICE_VERSION, "0.1.0")
 				.build();
 
-		OtlpGrpcSpanExporter jaegerOtlpExporter = OtlpGrpcSpanExporter.builder()
-				.setEndpoint("http://localhost:4317")
-				.setTimeout(30, TimeUnit.SECONDS)
+		SdkMeterProvider sdkMeterProvider = SdkMeterProvider.builder()
+				.registerMetricReader(metricReader)
+				.setResource(resource)
 				.build();
 
+		SpanDropRules spanDropRules = new SpanDropRules(SpanDropRules.parse(dropRules),
+				sdkMeterProvider.get(SpanDropRules.class.getName()));
+
+		// server spans get the CPU time and allocations of their request thread before they are exported
 		SdkTracerProvider sdkTracerProvider = SdkTracerProvider.builder()
-				.addSpanProcessor(SimpleSpanProcessor.create(LoggingSpanExporter.create()))
-				.addSpanProcessor(SimpleSpanProcessor.create(jaegerOtlpExporter))
+				.setSampler(spanDropRules.sampler(Sampler.parentBased(sampler)))
+				.addSpanProcessor(new ResourceUsageSpanProcessor(spanDropRules.processor(spanProcessor),
+						sdkMeterProvider.get(ResourceUsageSpanProcessor.class.getName()), resourceUsageSampleEvery))
+				.addSpanProcessor(threadSpanTracker)
+				.setResource(resource)
+				.build();
+
+		// slow query reports are written off the request thread
+		SdkLoggerProvider sdkLoggerProvider = SdkLoggerProvider.builder()
+				.addLogRecordProcessor(BatchLogRecordProcessor.builder(LogRecordExporter.composite(
+						SystemOutLogRecordExporter.create(), otlpExporterFactory.logRecordExporter())).build())
 				.setResource(resource)
 				.build();
 
-		ContextPropagators contextPropagators = ContextPropagators.create(W3CTraceContextPropagator.getInstance());
+		ContextPropagators contextPropagators = ContextPropagators.create(TextMapPropagator.composite(
+				W3CTraceContextPropagator.getInstance(), W3CBaggagePropagator.getInstance()));
 
 		OpenTelemetry openTelemetry = OpenTelemetrySdk.builder()
 				.setTracerProvider(sdkTracerProvider)
+				.setMeterProvider(sdkMeterProvider)
+				.setLoggerProvider(sdkLoggerProvider)
 				.setPropagators(contextPropagators)
 				.build();
 
 		return openTelemetry;
 	}
 
+	@Bean
+	public GrpcTelemetry grpcTelemetry(OpenTelemetry openTelemetry) {
+
+		return GrpcTelemetry.create(openTelemetry);
+	}
+
 }
@@ -0,0 +1,192 @@
+package io.novatec.todobackend;
+
+import java.io.Closeable;
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.grpc.ManagedChannel;
+import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
+import io.grpc.netty.shaded.io.netty.channel.ChannelOption;
+import io.opentelemetry.exporter.otlp.http.logs.OtlpHttpLogRecordExporter;
+import io.opentelemetry.exporter.otlp.http.metrics.OtlpHttpMetricExporter;
+import io.opentelemetry.exporter.otlp.http.trace.OtlpHttpSpanExporter;
+import io.opentelemetry.exporter.otlp.logs.OtlpGrpcLogRecordExporter;
+import io.opentelemetry.exporter.otlp.logs.OtlpGrpcLogRecordExporterBuilder;
+import io.opentelemetry.exporter.otlp.metrics.OtlpGrpcMetricExporter;
+import io.opentelemetry.exporter.otlp.metrics.OtlpGrpcMetricExporterBuilder;
+import io.opentelemetry.exporter.otlp.trace.OtlpGrpcSpanExporter;
+import io.opentelemetry.exporter.otlp.trace.OtlpGrpcSpanExporterBuilder;
+import io.opentelemetry.sdk.logs.export.LogRecordExporter;
+import io.opentelemetry.sdk.metrics.export.MetricExporter;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+
+/**
+ * Builds the OTLP exporters of traces, metrics and logs for one collector
+ * endpoint, protocol, compression and timeouts. With gRPC the exporters share
+ * one channel, so all signals go over a single HTTP/2 connection served by one
+ * small worker pool, and the factory closes the channel once the exporters are
+ * shut down. With OTLP/HTTP protobuf every exporter has its own JDK HTTP
+ * client, the exporters of SDK 1.40 do not take a shared one.
+ */
+public class OtlpExporterFactory implements Closeable {
+
+	public enum Protocol {
+		GRPC, HTTP_PROTOBUF
+	}
+
+	private final Protocol protocol;
+	private final String endpoint;
+	private final String compression;
+	private final Duration timeout;
+	private final Duration connectTimeout;
+	private final ExecutorService workers;
+	private final ManagedChannel channel;
+
+	public OtlpExporterFactory(Protocol protocol, String endpoint, String compression, Duration timeout,
+			Duration connectTimeout, int workerThreads) {
+
+		if (!compression.equals("gzip") && !compression.equals("none"))
+			throw new IllegalArgumentException("OTLP compression must be gzip or none, not " + compression);
+		this.protocol = protocol;
+		this.endpoint = endpoint.endsWith("/") ? endpoint.substring(0, endpoint.length() - 1) : endpoint;
+		this.compression = compression;
+		this.timeout = timeout;
+		this.connectTimeout = connectTimeout;
+		if (protocol == Protocol.GRPC) {
+			workers = Executors.newFixedThreadPool(workerThreads, new WorkerThreads());
+			channel = channel(URI.create(this.endpoint), connectTimeout, workers);
+		} else {
+			workers = null;
+			channel = null;
+		}
+	}
+
+	/**
+	 * Parses the protocol names of {@code otel.exporter.otlp.protocol}.
+	 */
+	static Protocol parseProtocol(String protocol) {
+
+		return switch (protocol) {
+			case "grpc" -> Protocol.GRPC;
+			case "http/protobuf" -> Protocol.HTTP_PROTOBUF;
+			default -> throw new IllegalArgumentException("OTLP protocol must be grpc or http/protobuf, not " + protocol);
+		};
+	}
+
+	private static ManagedChannel channel(URI endpoint, Duration connectTimeout, ExecutorService workers) {
+
+		boolean tls = "https".equals(endpoint.getScheme());
+		int port = endpoint.getPort() != -1 ? endpoint.getPort() : tls ? 443 : 80;
+		NettyChannelBuilder builder = NettyChannelBuilder.forAddress(endpoint.getHost(), port)
+				.executor(workers)
+				.withOption(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis());
+		return (tls ? builder.useTransportSecurity() : builder.usePlaintext()).build();
+	}
+
+	public Protocol getProtocol() {
+		return protocol;
+	}
+
+	public SpanExporter spanExporter() {
+
+		if (protocol == Protocol.GRPC)
+			return grpcSpanExporter()
+					.setCompression(compression)
+					.setTimeout(timeout)
+					.build();
+		return OtlpHttpSpanExporter.builder()
+				.setEndpoint(endpoint + "/v1/traces")
+				.setCompression(compression)
+				.setTimeout(timeout)
+				.setConnectTimeout(connectTimeout)
+				.build();
+	}
+
+	public MetricExporter metricExporter() {
+
+		if (protocol == Protocol.GRPC)
+			return grpcMetricExporter()
+					.setCompression(compression)
+					.setTimeout(timeout)
+					.build();
+		return OtlpHttpMetricExporter.builder()
+				.setEndpoint(endpoint + "/v1/metrics")
+				.setCompression(compression)
+				.setTimeout(timeout)
+				.setConnectTimeout(connectTimeout)
+				.build();
+	}
+
+	public LogRecordExporter logRecordExporter() {
+
+		if (protocol == Protocol.GRPC)
+			return grpcLogRecordExporter()
+					.setCompression(compression)
+					.setTimeout(timeout)
+					.build();
+		return OtlpHttpLogRecordExporter.builder()
+				.setEndpoint(endpoint + "/v1/logs")
+				.setCompression(compression)
+				.setTimeout(timeout)
+				.setConnectTimeout(connectTimeout)
+				.build();
+	}
+
+	/*
+	 * setChannel is deprecated in 1.40 because the exporters are meant to own
+	 * their connection; it is still the only way to share one connection among
+	 * the signals, which is what this factory is for. The deprecated calls are
+	 * kept to these three builders.
+	 */
+
+	@SuppressWarnings("deprecation")
+	private OtlpGrpcSpanExporterBuilder grpcSpanExporter() {
+		return OtlpGrpcSpanExporter.builder().setChannel(channel);
+	}
+
+	@SuppressWarnings("deprecation")
+	private OtlpGrpcMetricExporterBuilder grpcMetricExporter() {
+		return OtlpGrpcMetricExporter.builder().setChannel(channel);
+	}
+
+	@SuppressWarnings("deprecation")
+	private OtlpGrpcLogRecordExporterBuilder grpcLogRecordExporter() {
+		return OtlpGrpcLogRecordExporter.builder().setChannel(channel);
+	}
+
+	// exporters given a channel leave it open when they are shut down
+	@Override
+	public void close() {
+
+		if (channel == null)
+			return;
+		channel.shutdown();
+		try {
+			if (!channel.awaitTermination(timeout.toMillis(), TimeUnit.MILLISECONDS))
+				channel.shutdownNow();
+		} catch (InterruptedException e) {
+			channel.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+		workers.shutdown();
+	}
+
+	private static class WorkerThreads implements ThreadFactory {
+
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+
+			Thread thread = new Thread(runnable, "otlp-exporter-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+
+}
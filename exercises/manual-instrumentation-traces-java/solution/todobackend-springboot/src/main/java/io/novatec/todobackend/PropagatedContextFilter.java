@@ -0,0 +1,44 @@
+package io.novatec.todobackend;
+
+import java.io.IOException;
+
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.Scope;
+import io.opentelemetry.context.propagation.TextMapPropagator;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Makes the trace context and baggage of the caller current for the whole
+ * request, so every endpoint sees the caller's deadline and starts its spans
+ * in the caller's trace.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class PropagatedContextFilter extends OncePerRequestFilter {
+
+	private final TextMapPropagator propagator;
+
+	public PropagatedContextFilter(OpenTelemetry openTelemetry) {
+		this.propagator = openTelemetry.getPropagators().getTextMapPropagator();
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+			throws ServletException, IOException {
+
+		Context context = Deadline.start(propagator.extract(Context.current(), request, new HttpRequestGetter()));
+		try (Scope scope = context.makeCurrent()) {
+			filterChain.doFilter(request, response);
+		}
+	}
+
+}
@@ -0,0 +1,40 @@
+package io.novatec.todobackend;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+@Configuration
+@ConditionalOnProperty("todobackend.datasource.replica.url")
+public class ReadWriteRoutingConfiguration {
+
+	@Bean
+	public ReadWriteRoutingDataSource dataSource(DataSourceProperties properties,
+			@Value("${todobackend.datasource.replica.url}") String replicaUrl,
+			@Value("${todobackend.datasource.replica.username:${spring.datasource.username:}}") String replicaUsername,
+			@Value("${todobackend.datasource.replica.password:${spring.datasource.password:}}") String replicaPassword,
+			@Value("${todobackend.datasource.read-your-writes-ms:2000}") long readYourWritesMillis) {
+
+		HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+		primary.setPoolName("primary");
+
+		HikariDataSource replica = DataSourceBuilder.create()
+				.type(HikariDataSource.class)
+				.url(replicaUrl)
+				.username(replicaUsername)
+				.password(replicaPassword)
+				.build();
+		replica.setPoolName("replica");
+		replica.setReadOnly(true);
+
+		return new ReadWriteRoutingDataSource(primary, replica, Duration.ofMillis(readYourWritesMillis));
+	}
+
+}
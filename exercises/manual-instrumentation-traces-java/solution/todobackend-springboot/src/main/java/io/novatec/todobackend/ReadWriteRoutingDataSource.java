@@ -0,0 +1,130 @@
+package io.novatec.todobackend;
+
+import static io.opentelemetry.api.common.AttributeKey.stringKey;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.trace.Span;
+import jakarta.servlet.http.HttpServletRequest;
+
+/**
+ * Sends read-only transactions to the replica and everything else to the
+ * primary. A client that committed a write within the read-your-writes window
+ * keeps reading from the primary until the replica has had time to catch up.
+ * Clients are told apart by the {@code X-Client-Id} header, which the UI sets
+ * per session, or by their remote address.
+ *
+ * The connection is only fetched on the first statement, after the
+ * transaction manager has marked the transaction read-only.
+ */
+public class ReadWriteRoutingDataSource extends LazyConnectionDataSourceProxy implements Closeable {
+
+	static final AttributeKey<String> ROUTE = stringKey("todobackend.datasource.route");
+	static final String CLIENT_ID_HEADER = "X-Client-Id";
+
+	enum Route {
+		PRIMARY, REPLICA
+	}
+
+	private final Router router;
+
+	ReadWriteRoutingDataSource(HikariDataSource primary, HikariDataSource replica, Duration readYourWritesWindow) {
+
+		super(new Router(primary, replica, readYourWritesWindow));
+		this.router = (Router) getTargetDataSource();
+	}
+
+	@Override
+	public void close() {
+
+		router.primary.close();
+		router.replica.close();
+	}
+
+	static class Router extends AbstractRoutingDataSource {
+
+		private static final int MAX_TRACKED_CLIENTS = 10_000;
+
+		private final HikariDataSource primary;
+		private final HikariDataSource replica;
+		private final long readYourWritesNanos;
+		private final Map<String, Long> lastWrites = new ConcurrentHashMap<>();
+
+		Router(HikariDataSource primary, HikariDataSource replica, Duration readYourWritesWindow) {
+
+			this.primary = primary;
+			this.replica = replica;
+			this.readYourWritesNanos = readYourWritesWindow.toNanos();
+			setTargetDataSources(Map.of(Route.PRIMARY, primary, Route.REPLICA, replica));
+			setDefaultTargetDataSource(primary);
+			afterPropertiesSet();
+		}
+
+		@Override
+		protected Object determineCurrentLookupKey() {
+
+			// recorded on the request span, the statement's own span only starts once it has run
+			Route route = route(clientId());
+			Span.current().setAttribute(ROUTE, route.name().toLowerCase());
+			return route;
+		}
+
+		private Route route(String clientId) {
+
+			if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+				// a write only counts once it is committed, and the window starts from the commit
+				if (clientId != null && TransactionSynchronizationManager.isSynchronizationActive())
+					TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+
+						@Override
+						public void afterCommit() {
+							recordWrite(clientId, System.nanoTime());
+						}
+					});
+				return Route.PRIMARY;
+			}
+
+			long now = System.nanoTime();
+			Long lastWrite = clientId == null ? null : lastWrites.get(clientId);
+			if (lastWrite != null) {
+				if (now - lastWrite < readYourWritesNanos)
+					return Route.PRIMARY;
+				lastWrites.remove(clientId, lastWrite);
+			}
+			return Route.REPLICA;
+		}
+
+		private void recordWrite(String clientId, long now) {
+
+			if (lastWrites.size() >= MAX_TRACKED_CLIENTS)
+				lastWrites.values().removeIf(lastWrite -> now - lastWrite >= readYourWritesNanos);
+			lastWrites.put(clientId, now);
+		}
+
+		private static String clientId() {
+
+			RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+			if (!(attributes instanceof ServletRequestAttributes servletAttributes))
+				return null;
+
+			HttpServletRequest request = servletAttributes.getRequest();
+			String clientId = request.getHeader(CLIENT_ID_HEADER);
+			return clientId != null ? clientId : request.getRemoteAddr();
+		}
+	}
+
+}
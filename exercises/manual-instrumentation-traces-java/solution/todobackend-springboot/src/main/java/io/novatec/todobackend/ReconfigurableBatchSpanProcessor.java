@@ -0,0 +1,113 @@
+package io.novatec.todobackend;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.ReadWriteSpan;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.BatchSpanProcessor;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+
+/**
+ * A {@link BatchSpanProcessor} whose schedule delay can be changed at runtime.
+ * The batch processor itself is immutable, so a new one is built and swapped
+ * in; the old one exports what it has queued and stops. The exporter is shared
+ * by both and only shut down with this processor.
+ */
+public class ReconfigurableBatchSpanProcessor implements SpanProcessor {
+
+	private final SpanExporter exporter;
+	private final SpanExporter batchExporter;
+	private final AtomicReference<SpanProcessor> current = new AtomicReference<>();
+	private volatile Duration scheduleDelay;
+
+	public ReconfigurableBatchSpanProcessor(SpanExporter exporter, Duration scheduleDelay) {
+
+		this.exporter = exporter;
+		this.batchExporter = new Unclosable(exporter);
+		this.scheduleDelay = scheduleDelay;
+		current.set(build(scheduleDelay));
+	}
+
+	public Duration getScheduleDelay() {
+		return scheduleDelay;
+	}
+
+	public synchronized void setScheduleDelay(Duration scheduleDelay) {
+
+		if (scheduleDelay.isNegative() || scheduleDelay.isZero())
+			throw new IllegalArgumentException("Schedule delay " + scheduleDelay + " is not positive");
+		this.scheduleDelay = scheduleDelay;
+		current.getAndSet(build(scheduleDelay)).shutdown();
+	}
+
+	private SpanProcessor build(Duration scheduleDelay) {
+		return BatchSpanProcessor.builder(batchExporter).setScheduleDelay(scheduleDelay).build();
+	}
+
+	@Override
+	public void onStart(Context parentContext, ReadWriteSpan span) {
+	}
+
+	@Override
+	public boolean isStartRequired() {
+		return false;
+	}
+
+	@Override
+	public void onEnd(ReadableSpan span) {
+		current.get().onEnd(span);
+	}
+
+	@Override
+	public boolean isEndRequired() {
+		return true;
+	}
+
+	@Override
+	public CompletableResultCode forceFlush() {
+		return current.get().forceFlush();
+	}
+
+	@Override
+	public synchronized CompletableResultCode shutdown() {
+
+		CompletableResultCode result = new CompletableResultCode();
+		current.get().shutdown().whenComplete(() -> exporter.shutdown().whenComplete(result::succeed));
+		return result;
+	}
+
+	/**
+	 * Lets a replaced batch processor flush on shutdown without closing the
+	 * exporter its successor still uses.
+	 */
+	private static class Unclosable implements SpanExporter {
+
+		private final SpanExporter delegate;
+
+		Unclosable(SpanExporter delegate) {
+			this.delegate = delegate;
+		}
+
+		@Override
+		public CompletableResultCode export(Collection<SpanData> spans) {
+			return delegate.export(spans);
+		}
+
+		@Override
+		public CompletableResultCode flush() {
+			return delegate.flush();
+		}
+
+		@Override
+		public CompletableResultCode shutdown() {
+			return delegate.flush();
+		}
+	}
+
+}
@@ -0,0 +1,152 @@
+package io.novatec.todobackend;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.common.export.MemoryMode;
+import io.opentelemetry.sdk.metrics.Aggregation;
+import io.opentelemetry.sdk.metrics.InstrumentType;
+import io.opentelemetry.sdk.metrics.data.AggregationTemporality;
+import io.opentelemetry.sdk.metrics.data.MetricData;
+import io.opentelemetry.sdk.metrics.export.CollectionRegistration;
+import io.opentelemetry.sdk.metrics.export.MetricExporter;
+import io.opentelemetry.sdk.metrics.export.MetricReader;
+
+/**
+ * Collects and exports metrics periodically like a
+ * {@link io.opentelemetry.sdk.metrics.export.PeriodicMetricReader}, but with an
+ * interval that can be changed at runtime. A reader cannot be replaced once
+ * the meter provider is built, so this one reschedules itself instead.
+ */
+public class ReconfigurableMetricReader implements MetricReader {
+
+	private Logger logger = LoggerFactory.getLogger(ReconfigurableMetricReader.class);
+
+	private final MetricExporter exporter;
+	private final ScheduledExecutorService scheduler;
+	private volatile CollectionRegistration registration = CollectionRegistration.noop();
+	private volatile Duration interval;
+	private ScheduledFuture<?> schedule;
+
+	public ReconfigurableMetricReader(MetricExporter exporter, Duration interval) {
+
+		this.exporter = exporter;
+		this.interval = interval;
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "metric-reader");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	public Duration getInterval() {
+		return interval;
+	}
+
+	public synchronized void setInterval(Duration interval) {
+
+		if (interval.isNegative() || interval.isZero())
+			throw new IllegalArgumentException("Export interval " + interval + " is not positive");
+		this.interval = interval;
+		if (schedule != null)
+			reschedule();
+	}
+
+	@Override
+	public synchronized void register(CollectionRegistration registration) {
+
+		this.registration = registration;
+		reschedule();
+	}
+
+	private void reschedule() {
+
+		if (schedule != null)
+			schedule.cancel(false);
+		long millis = interval.toMillis();
+		schedule = scheduler.scheduleWithFixedDelay(this::export, millis, millis, TimeUnit.MILLISECONDS);
+	}
+
+	private CompletableResultCode export() {
+
+		// a periodic task that throws is never run again, so nothing may escape
+		try {
+			Collection<MetricData> metrics = registration.collectAllMetrics();
+			return metrics.isEmpty() ? CompletableResultCode.ofSuccess() : exporter.export(metrics);
+		} catch (Throwable t) {
+			logger.warn("Metric export failed", t);
+			return CompletableResultCode.ofFailure();
+		}
+	}
+
+	/**
+	 * Exports, then runs {@code next} on the exporter; the result fails if
+	 * either of them failed.
+	 */
+	private void exportThen(Supplier<CompletableResultCode> next, CompletableResultCode result) {
+
+		CompletableResultCode exported = export();
+		exported.whenComplete(() -> {
+			CompletableResultCode done = CompletableResultCode.ofAll(List.of(exported, next.get()));
+			done.whenComplete(() -> {
+				if (done.isSuccess())
+					result.succeed();
+				else
+					result.fail();
+			});
+		});
+	}
+
+	@Override
+	public AggregationTemporality getAggregationTemporality(InstrumentType instrumentType) {
+		return exporter.getAggregationTemporality(instrumentType);
+	}
+
+	@Override
+	public Aggregation getDefaultAggregation(InstrumentType instrumentType) {
+		return exporter.getDefaultAggregation(instrumentType);
+	}
+
+	@Override
+	public MemoryMode getMemoryMode() {
+		return exporter.getMemoryMode();
+	}
+
+	@Override
+	public CompletableResultCode forceFlush() {
+
+		CompletableResultCode result = new CompletableResultCode();
+		try {
+			scheduler.execute(() -> exportThen(exporter::flush, result));
+		} catch (RejectedExecutionException e) {
+			// shut down already
+			return CompletableResultCode.ofFailure();
+		}
+		return result;
+	}
+
+	@Override
+	public synchronized CompletableResultCode shutdown() {
+
+		if (scheduler.isShutdown())
+			return CompletableResultCode.ofSuccess();
+		if (schedule != null)
+			schedule.cancel(false);
+		CompletableResultCode result = new CompletableResultCode();
+		scheduler.execute(() -> exportThen(exporter::shutdown, result));
+		scheduler.shutdown();
+		return result;
+	}
+
+}
@@ -0,0 +1,102 @@
+package io.novatec.todobackend;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.trace.data.LinkData;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import io.opentelemetry.sdk.trace.samplers.SamplingResult;
+
+/**
+ * Samples root spans by trace id ratio, with a ratio of its own for span names
+ * that have a rule. The ratios can be replaced at any time; the rules are an
+ * immutable snapshot behind an atomic reference, so a span start only reads the
+ * reference and looks up its name.
+ */
+public class ReconfigurableSampler implements Sampler {
+
+	private final AtomicReference<Rules> rules = new AtomicReference<>();
+
+	public ReconfigurableSampler(double ratio, Map<String, Double> ratiosBySpanName) {
+		update(ratio, ratiosBySpanName);
+	}
+
+	public void update(double ratio, Map<String, Double> ratiosBySpanName) {
+		rules.set(new Rules(ratio, ratiosBySpanName));
+	}
+
+	public double getRatio() {
+		return rules.get().ratio;
+	}
+
+	public Map<String, Double> getRatiosBySpanName() {
+		return rules.get().ratiosBySpanName;
+	}
+
+	@Override
+	public SamplingResult shouldSample(Context parentContext, String traceId, String name, SpanKind spanKind,
+			Attributes attributes, List<LinkData> parentLinks) {
+
+		return rules.get().samplerFor(name)
+				.shouldSample(parentContext, traceId, name, spanKind, attributes, parentLinks);
+	}
+
+	@Override
+	public String getDescription() {
+
+		Rules current = rules.get();
+		return "ReconfigurableSampler{ratio=" + current.ratio + ", rules=" + current.ratiosBySpanName + "}";
+	}
+
+	/**
+	 * Parses {@code name=ratio} pairs separated by commas, as in
+	 * {@code addTodo=0.1,SELECT todo=0.01}.
+	 */
+	static Map<String, Double> parseRules(String rules) {
+
+		Map<String, Double> ratios = new LinkedHashMap<>();
+		for (String rule : rules.split(",")) {
+			if (rule.isBlank())
+				continue;
+			int separator = rule.lastIndexOf('=');
+			if (separator < 1)
+				throw new IllegalArgumentException("Sampler rule '" + rule + "' is not name=ratio");
+			ratios.put(rule.substring(0, separator).trim(), Double.parseDouble(rule.substring(separator + 1).trim()));
+		}
+		return ratios;
+	}
+
+	private static final class Rules {
+
+		final double ratio;
+		final Map<String, Double> ratiosBySpanName;
+		final Sampler sampler;
+		final Map<String, Sampler> samplers = new HashMap<>();
+
+		Rules(double ratio, Map<String, Double> ratiosBySpanName) {
+
+			this.ratio = checked(ratio);
+			this.ratiosBySpanName = Map.copyOf(ratiosBySpanName);
+			this.sampler = Sampler.traceIdRatioBased(ratio);
+			ratiosBySpanName.forEach((name, spanRatio) -> samplers.put(name, Sampler.traceIdRatioBased(checked(spanRatio))));
+		}
+
+		Sampler samplerFor(String name) {
+			return samplers.getOrDefault(name, sampler);
+		}
+
+		static double checked(double ratio) {
+
+			if (!(ratio >= 0 && ratio <= 1))
+				throw new IllegalArgumentException("Sampling ratio " + ratio + " is not between 0 and 1");
+			return ratio;
+		}
+	}
+
+}
@@ -0,0 +1,227 @@
+package io.novatec.todobackend;
+
+import static io.opentelemetry.api.common.AttributeKey.longKey;
+import static io.opentelemetry.api.common.AttributeKey.stringKey;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.DoubleHistogram;
+import io.opentelemetry.api.metrics.LongHistogram;
+import io.opentelemetry.api.metrics.Meter;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.common.InstrumentationLibraryInfo;
+import io.opentelemetry.sdk.common.InstrumentationScopeInfo;
+import io.opentelemetry.sdk.trace.ReadWriteSpan;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import io.opentelemetry.sdk.trace.data.DelegatingSpanData;
+import io.opentelemetry.sdk.trace.data.SpanData;
+
+/**
+ * Measures CPU time and allocated bytes of the request thread between start
+ * and end of SERVER spans and adds them to the span before it is handed to the
+ * exporting processors. Every server span is measured by default, so the
+ * numbers are there for whichever request turns out to be slow. Most of the
+ * cost is the two reads of the thread CPU clock, which are system calls;
+ * {@code sampleEvery} trades measured spans for less overhead. Spans that
+ * start or end on a virtual thread, or end on another thread than they
+ * started on, are passed through unchanged.
+ */
+public class ResourceUsageSpanProcessor implements SpanProcessor {
+
+	static final AttributeKey<Long> CPU_TIME = longKey("todobackend.thread.cpu_time_ns");
+	static final AttributeKey<Long> ALLOCATED_BYTES = longKey("todobackend.thread.allocated_bytes");
+	static final AttributeKey<String> ROUTE = stringKey("todobackend.route");
+
+	static final int MAX_DEPTH = 8;
+
+	private final SpanProcessor delegate;
+	private final int sampleEvery;
+	private final com.sun.management.ThreadMXBean threads;
+	private final ThreadLocal<Sample> started = new ThreadLocal<>();
+	private final Map<String, Attributes> routes = new ConcurrentHashMap<>();
+
+	private final DoubleHistogram cpuTime;
+	private final LongHistogram allocatedBytes;
+
+	public ResourceUsageSpanProcessor(SpanProcessor delegate, Meter meter, int sampleEvery) {
+
+		this.delegate = delegate;
+		this.sampleEvery = Math.max(1, sampleEvery);
+		this.threads = supportedThreadMXBean();
+
+		cpuTime = meter.histogramBuilder("todobackend.request.cpu_time")
+				.setDescription("CPU time the request thread spent within a server span")
+				.setUnit("ms")
+				.build();
+		allocatedBytes = meter.histogramBuilder("todobackend.request.allocated")
+				.setDescription("Bytes allocated by the request thread within a server span")
+				.setUnit("By")
+				.ofLongs()
+				.build();
+	}
+
+	private static com.sun.management.ThreadMXBean supportedThreadMXBean() {
+
+		if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads
+				&& threads.isCurrentThreadCpuTimeSupported() && threads.isThreadAllocatedMemorySupported()) {
+			threads.setThreadCpuTimeEnabled(true);
+			threads.setThreadAllocatedMemoryEnabled(true);
+			return threads;
+		}
+		return null;
+	}
+
+	@Override
+	public void onStart(Context parentContext, ReadWriteSpan span) {
+
+		if (threads != null && span.getKind() == SpanKind.SERVER && !Thread.currentThread().isVirtual()
+				&& (sampleEvery == 1 || ThreadLocalRandom.current().nextInt(sampleEvery) == 0)) {
+			long cpu = threads.getCurrentThreadCpuTime();
+			long allocated = threads.getCurrentThreadAllocatedBytes();
+			if (cpu >= 0 && allocated >= 0) {
+				// samples of spans that ended on another thread are dropped instead of piling up
+				Sample outer = started.get();
+				started.set(new Sample(span, cpu, allocated, outer != null && outer.depth < MAX_DEPTH ? outer : null));
+			}
+		}
+		delegate.onStart(parentContext, span);
+	}
+
+	@Override
+	public boolean isStartRequired() {
+		return true;
+	}
+
+	@Override
+	public void onEnd(ReadableSpan span) {
+
+		Sample start = span.getKind() == SpanKind.SERVER ? started.get() : null;
+		if (start != null && start.span == span) {
+			started.set(start.outer);
+			long cpu = threads.getCurrentThreadCpuTime() - start.cpu;
+			long allocated = threads.getCurrentThreadAllocatedBytes() - start.allocated;
+
+			Attributes route = routes.computeIfAbsent(span.getName(), name -> Attributes.of(ROUTE, name));
+			cpuTime.record(cpu / 1_000_000.0, route);
+			allocatedBytes.record(allocated, route);
+
+			span = new ResourceUsageSpan(span, cpu, allocated);
+		}
+		delegate.onEnd(span);
+	}
+
+	@Override
+	public boolean isEndRequired() {
+		return true;
+	}
+
+	@Override
+	public CompletableResultCode shutdown() {
+		return delegate.shutdown();
+	}
+
+	@Override
+	public CompletableResultCode forceFlush() {
+		return delegate.forceFlush();
+	}
+
+	private record Sample(ReadableSpan span, long cpu, long allocated, Sample outer, int depth) {
+
+		Sample(ReadableSpan span, long cpu, long allocated, Sample outer) {
+			this(span, cpu, allocated, outer, outer == null ? 1 : outer.depth + 1);
+		}
+	}
+
+	private record ResourceUsageSpan(ReadableSpan span, long cpuTime, long allocatedBytes) implements ReadableSpan {
+
+		@Override
+		public SpanData toSpanData() {
+
+			SpanData data = span.toSpanData();
+			Attributes attributes = data.getAttributes().toBuilder()
+					.put(CPU_TIME, cpuTime)
+					.put(ALLOCATED_BYTES, allocatedBytes)
+					.build();
+
+			return new DelegatingSpanData(data) {
+
+				@Override
+				public Attributes getAttributes() {
+					return attributes;
+				}
+
+				@Override
+				public int getTotalAttributeCount() {
+					return data.getTotalAttributeCount() + 2;
+				}
+			};
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public <T> T getAttribute(AttributeKey<T> key) {
+
+			if (CPU_TIME.equals(key))
+				return (T) Long.valueOf(cpuTime);
+			if (ALLOCATED_BYTES.equals(key))
+				return (T) Long.valueOf(allocatedBytes);
+			return span.getAttribute(key);
+		}
+
+		@Override
+		public Attributes getAttributes() {
+			return toSpanData().getAttributes();
+		}
+
+		@Override
+		public SpanContext getSpanContext() {
+			return span.getSpanContext();
+		}
+
+		@Override
+		public SpanContext getParentSpanContext() {
+			return span.getParentSpanContext();
+		}
+
+		@Override
+		public String getName() {
+			return span.getName();
+		}
+
+		@Override
+		@SuppressWarnings("deprecation")
+		public InstrumentationLibraryInfo getInstrumentationLibraryInfo() {
+			return span.getInstrumentationLibraryInfo();
+		}
+
+		@Override
+		public InstrumentationScopeInfo getInstrumentationScopeInfo() {
+			return span.getInstrumentationScopeInfo();
+		}
+
+		@Override
+		public boolean hasEnded() {
+			return span.hasEnded();
+		}
+
+		@Override
+		public long getLatencyNanos() {
+			return span.getLatencyNanos();
+		}
+
+		@Override
+		public SpanKind getKind() {
+			return span.getKind();
+		}
+	}
+
+}
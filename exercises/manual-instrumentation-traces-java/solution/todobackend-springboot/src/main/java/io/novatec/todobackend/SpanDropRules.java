@@ -0,0 +1,273 @@
+package io.novatec.todobackend;
+
+import static io.opentelemetry.api.common.AttributeKey.stringKey;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.Meter;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.ReadWriteSpan;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import io.opentelemetry.sdk.trace.data.LinkData;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import io.opentelemetry.sdk.trace.samplers.SamplingResult;
+import io.opentelemetry.semconv.HttpAttributes;
+import io.opentelemetry.semconv.UrlAttributes;
+
+/**
+ * Drops spans nobody looks at by span name, route, attribute or a duration
+ * floor, and counts the dropped spans per rule. Name, route and attribute
+ * rules decide in the {@link #sampler(Sampler) sampler}, so a span they match
+ * starts as a non-recording span and its children are dropped with it. Routes
+ * and attributes set after the start, and durations, are checked by the
+ * {@link #processor(SpanProcessor) processor} before the span is handed on
+ * for export. A duration only drops a local root span without children,
+ * children end and are exported before their parent and would otherwise lose
+ * it; spans with an error status are never dropped for their duration.
+ */
+public class SpanDropRules {
+
+	static final AttributeKey<String> RULE = stringKey("todobackend.drop_rule");
+	static final int MAX_OPEN_ROOTS = 10_000;
+
+	enum Type {
+		NAME, ROUTE, ATTRIBUTE, DURATION
+	}
+
+	record Rule(String name, Type type, String match, String value, long nanos, Attributes counted) {
+
+		Rule(String name, Type type, String match, String value, long nanos) {
+			this(name, type, match, value, nanos, Attributes.of(RULE, name));
+		}
+
+		boolean matchesName(String spanName) {
+			return match.endsWith("*") ? spanName.startsWith(match.substring(0, match.length() - 1))
+					: spanName.equals(match);
+		}
+
+		boolean matchesAttributes(Attributes attributes) {
+
+			if (type == Type.ROUTE)
+				return matchesRoute(attributes.get(HttpAttributes.HTTP_ROUTE), attributes.get(UrlAttributes.URL_PATH));
+			boolean[] matched = { false };
+			attributes.forEach((key, attributeValue) -> matched[0] |= key.getKey().equals(match)
+					&& (value == null || value.equals(String.valueOf(attributeValue))));
+			return matched[0];
+		}
+
+		private boolean matchesRoute(String route, String path) {
+			return startsWith(route) || startsWith(path);
+		}
+
+		// the route of a span may be the full request URL
+		private boolean startsWith(String route) {
+
+			if (route == null)
+				return false;
+			int scheme = route.indexOf("://");
+			if (scheme >= 0) {
+				int path = route.indexOf('/', scheme + 3);
+				route = path < 0 ? "/" : route.substring(path);
+			}
+			return route.startsWith(match);
+		}
+
+		boolean matchesAtStart(String spanName, Attributes attributes) {
+
+			return switch (type) {
+				case NAME -> matchesName(spanName);
+				case ROUTE, ATTRIBUTE -> matchesAttributes(attributes);
+				case DURATION -> false;
+			};
+		}
+
+		boolean matchesAtEnd(ReadableSpan span, boolean standalone) {
+
+			return switch (type) {
+				case NAME -> false;
+				// looked up one by one, a copy of all attributes is only taken for attribute rules
+				case ROUTE -> matchesRoute(span.getAttribute(HttpAttributes.HTTP_ROUTE),
+						span.getAttribute(UrlAttributes.URL_PATH));
+				case ATTRIBUTE -> matchesAttributes(span.getAttributes());
+				case DURATION -> standalone && span.getLatencyNanos() < nanos
+						&& span.toSpanData().getStatus().getStatusCode() != StatusCode.ERROR;
+			};
+		}
+	}
+
+	private final List<Rule> rules;
+	private final boolean durationRules;
+	private final LongCounter dropped;
+
+	public SpanDropRules(List<Rule> rules, Meter meter) {
+
+		this.rules = List.copyOf(rules);
+		this.durationRules = rules.stream().anyMatch(rule -> rule.type == Type.DURATION);
+		dropped = meter.counterBuilder("todobackend.spans.dropped")
+				.setDescription("Spans dropped by a drop rule before export")
+				.setUnit("{span}")
+				.build();
+	}
+
+	/**
+	 * Parses {@code rule=type:match} pairs separated by commas, where the type is
+	 * {@code name} (a span name, or a prefix ending in {@code *}), {@code route}
+	 * (a prefix of the route or URL path), {@code attribute} ({@code key} or
+	 * {@code key=value}) or {@code duration} (a floor in milliseconds), as in
+	 * {@code actuator=route:/actuator,fast-queries=duration:1ms}.
+	 */
+	static List<Rule> parse(String rules) {
+
+		List<Rule> parsed = new ArrayList<>();
+		for (String rule : rules.split(",")) {
+			if (rule.isBlank())
+				continue;
+			int nameEnd = rule.indexOf('=');
+			int typeEnd = rule.indexOf(':', nameEnd + 1);
+			if (nameEnd < 1 || typeEnd < 0)
+				throw new IllegalArgumentException("Drop rule '" + rule + "' is not rule=type:match");
+			String name = rule.substring(0, nameEnd).trim();
+			String type = rule.substring(nameEnd + 1, typeEnd).trim();
+			String match = rule.substring(typeEnd + 1).trim();
+			parsed.add(switch (type) {
+				case "name" -> new Rule(name, Type.NAME, match, null, 0);
+				case "route" -> new Rule(name, Type.ROUTE, match, null, 0);
+				case "attribute" -> {
+					int separator = match.indexOf('=');
+					yield separator < 0 ? new Rule(name, Type.ATTRIBUTE, match, null, 0)
+							: new Rule(name, Type.ATTRIBUTE, match.substring(0, separator),
+									match.substring(separator + 1), 0);
+				}
+				case "duration" -> {
+					if (!match.endsWith("ms"))
+						throw new IllegalArgumentException("Drop rule '" + rule + "' needs a duration in ms");
+					yield new Rule(name, Type.DURATION, match, null,
+							TimeUnit.MILLISECONDS.toNanos(Long.parseLong(match.substring(0, match.length() - 2).trim())));
+				}
+				default -> throw new IllegalArgumentException(
+						"Drop rule '" + rule + "' has type " + type + ", not name, route, attribute or duration");
+			});
+		}
+		return parsed;
+	}
+
+	public List<Rule> getRules() {
+		return rules;
+	}
+
+	/**
+	 * Drops the spans the rules match at their start and leaves all others to
+	 * the given sampler. Wraps the parent based sampler, so that child spans are
+	 * matched too.
+	 */
+	public Sampler sampler(Sampler delegate) {
+
+		return new Sampler() {
+
+			@Override
+			public SamplingResult shouldSample(Context parentContext, String traceId, String name, SpanKind spanKind,
+					Attributes attributes, List<LinkData> parentLinks) {
+
+				for (Rule rule : rules) {
+					if (rule.matchesAtStart(name, attributes)) {
+						dropped.add(1, rule.counted);
+						return SamplingResult.drop();
+					}
+				}
+				return delegate.shouldSample(parentContext, traceId, name, spanKind, attributes, parentLinks);
+			}
+
+			@Override
+			public String getDescription() {
+				return "SpanDropRules{rules=" + rules + ", delegate=" + delegate.getDescription() + "}";
+			}
+		};
+	}
+
+	/**
+	 * Passes only ended spans that no rule matches on to the given processor.
+	 */
+	public SpanProcessor processor(SpanProcessor delegate) {
+		return new DropProcessor(delegate);
+	}
+
+	class DropProcessor implements SpanProcessor {
+
+		// local roots that have not ended yet and whether they started children, only tracked while there are
+		// duration rules; a root that never ends stays until the limit, roots beyond it are never dropped
+		final Map<String, Boolean> openRoots = new ConcurrentHashMap<>();
+		private final SpanProcessor delegate;
+
+		DropProcessor(SpanProcessor delegate) {
+			this.delegate = delegate;
+		}
+
+		@Override
+		public void onStart(Context parentContext, ReadWriteSpan span) {
+
+			if (durationRules) {
+				SpanContext parent = span.getParentSpanContext();
+				if (!parent.isValid() || parent.isRemote()) {
+					if (openRoots.size() < MAX_OPEN_ROOTS)
+						openRoots.put(span.getSpanContext().getSpanId(), Boolean.FALSE);
+				} else {
+					// children of a root that has already ended find no entry and leave none behind
+					openRoots.replace(parent.getSpanId(), Boolean.TRUE);
+				}
+			}
+			if (delegate.isStartRequired())
+				delegate.onStart(parentContext, span);
+		}
+
+		@Override
+		public boolean isStartRequired() {
+			return durationRules || delegate.isStartRequired();
+		}
+
+		@Override
+		public void onEnd(ReadableSpan span) {
+
+			boolean standalone = false;
+			if (durationRules) {
+				SpanContext parent = span.getParentSpanContext();
+				if (!parent.isValid() || parent.isRemote())
+					standalone = Boolean.FALSE.equals(openRoots.remove(span.getSpanContext().getSpanId()));
+			}
+			for (Rule rule : rules) {
+				if (rule.matchesAtEnd(span, standalone)) {
+					dropped.add(1, rule.counted);
+					return;
+				}
+			}
+			delegate.onEnd(span);
+		}
+
+		@Override
+		public boolean isEndRequired() {
+			return true;
+		}
+
+		@Override
+		public CompletableResultCode shutdown() {
+			return delegate.shutdown();
+		}
+
+		@Override
+		public CompletableResultCode forceFlush() {
+			return delegate.forceFlush();
+		}
+	}
+
+}
@@ -0,0 +1,79 @@
+package io.novatec.todobackend;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+/**
+ * Actuator endpoint to change the telemetry pipeline without a restart.
+ * {@code GET /actuator/telemetry} shows the current settings, a
+ * {@code POST /actuator/telemetry} with a JSON object of the settings to
+ * change applies them, e.g.
+ *
+ * <pre>
+ * {"samplerRatio": 0.1, "samplerRules": "addTodo=1", "droppedAttributes": "user_agent.original",
+ *  "spanExportDelayMs": 5000, "metricExportIntervalMs": 60000}
+ * </pre>
+ *
+ * Log levels are changed through the {@code loggers} endpoint.
+ */
+@Component
+@Endpoint(id = "telemetry")
+public class TelemetryEndpoint {
+
+	private final ReconfigurableSampler sampler;
+	private final AttributeFilteringSpanExporter attributeFilter;
+	private final ReconfigurableBatchSpanProcessor spanProcessor;
+	private final ReconfigurableMetricReader metricReader;
+
+	public TelemetryEndpoint(ReconfigurableSampler sampler, AttributeFilteringSpanExporter attributeFilter,
+			ReconfigurableBatchSpanProcessor spanProcessor, ReconfigurableMetricReader metricReader) {
+
+		this.sampler = sampler;
+		this.attributeFilter = attributeFilter;
+		this.spanProcessor = spanProcessor;
+		this.metricReader = metricReader;
+	}
+
+	@ReadOperation
+	public Map<String, Object> settings() {
+
+		Map<String, Object> settings = new LinkedHashMap<>();
+		settings.put("samplerRatio", sampler.getRatio());
+		settings.put("samplerRules", sampler.getRatiosBySpanName());
+		settings.put("droppedAttributes", attributeFilter.getDroppedKeys());
+		settings.put("spanExportDelayMs", spanProcessor.getScheduleDelay().toMillis());
+		settings.put("metricExportIntervalMs", metricReader.getInterval().toMillis());
+		return settings;
+	}
+
+	@WriteOperation
+	public Map<String, Object> update(@Nullable Double samplerRatio, @Nullable String samplerRules,
+			@Nullable String droppedAttributes, @Nullable Long spanExportDelayMs,
+			@Nullable Long metricExportIntervalMs) {
+
+		try {
+			if (samplerRatio != null || samplerRules != null)
+				sampler.update(samplerRatio != null ? samplerRatio : sampler.getRatio(),
+						samplerRules != null ? ReconfigurableSampler.parseRules(samplerRules)
+								: sampler.getRatiosBySpanName());
+			if (droppedAttributes != null)
+				attributeFilter.setDroppedKeys(AttributeFilteringSpanExporter.parseKeys(droppedAttributes));
+			if (spanExportDelayMs != null)
+				spanProcessor.setScheduleDelay(Duration.ofMillis(spanExportDelayMs));
+			if (metricExportIntervalMs != null)
+				metricReader.setInterval(Duration.ofMillis(metricExportIntervalMs));
+		} catch (IllegalArgumentException e) {
+			throw new InvalidEndpointRequestException(e.getMessage(), e.getMessage());
+		}
+		return settings();
+	}
+
+}
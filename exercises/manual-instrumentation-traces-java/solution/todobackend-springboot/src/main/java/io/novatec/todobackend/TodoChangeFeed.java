@@ -0,0 +1,219 @@
+package io.novatec.todobackend;
+
+import static io.opentelemetry.api.common.AttributeKey.stringKey;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.DoubleHistogram;
+import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.Meter;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.propagation.ContextPropagators;
+import jakarta.annotation.PreDestroy;
+
+@Component
+public class TodoChangeFeed {
+
+	private static final TodoChange HEARTBEAT = new TodoChange(0, "heartbeat", null, Map.of(), 0);
+
+	private Logger logger = LoggerFactory.getLogger(TodoChangeFeed.class);
+
+	private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+	// slots are reserved before a subscriber is added, so concurrent subscribes cannot exceed the limit
+	private final AtomicInteger slots = new AtomicInteger();
+	private final AtomicLong sequence = new AtomicLong();
+
+	private final ContextPropagators contextPropagators;
+	private final ExecutorService fanOutExecutor;
+	private final ScheduledExecutorService heartbeatExecutor;
+
+	private final LongCounter droppedEvents;
+	private final DoubleHistogram fanOutDuration;
+
+	@Value("${todobackend.changes.max-subscribers:256}")
+	int maxSubscribers;
+
+	@Value("${todobackend.changes.buffer-size:64}")
+	int bufferSize;
+
+	public TodoChangeFeed(OpenTelemetry openTelemetry,
+			@Value("${todobackend.changes.fan-out-threads:2}") int fanOutThreads,
+			@Value("${todobackend.changes.heartbeat-seconds:15}") long heartbeatSeconds) {
+
+		this.contextPropagators = openTelemetry.getPropagators();
+
+		Meter meter = openTelemetry.getMeter(TodoChangeFeed.class.getName());
+
+		meter.upDownCounterBuilder("todobackend.changes.subscribers")
+				.setDescription("How many clients are subscribed to the todo change feed")
+				.setUnit("{subscriber}")
+				.buildWithCallback(measurement -> measurement.record(subscribers.size()));
+
+		droppedEvents = meter.counterBuilder("todobackend.changes.dropped")
+				.setDescription("How many change events were not delivered to a subscriber")
+				.setUnit("{event}")
+				.build();
+
+		fanOutDuration = meter.histogramBuilder("todobackend.changes.fanout.duration")
+				.setDescription("Time from publishing a change until it was written to a subscriber")
+				.setUnit("ms")
+				.build();
+
+		this.fanOutExecutor = Executors.newFixedThreadPool(fanOutThreads, runnable -> {
+			Thread thread = new Thread(runnable, "todo-change-fanout");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.heartbeatExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "todo-change-heartbeat");
+			thread.setDaemon(true);
+			return thread;
+		});
+		heartbeatExecutor.scheduleAtFixedRate(this::heartbeat, heartbeatSeconds, heartbeatSeconds, TimeUnit.SECONDS);
+	}
+
+	SseEmitter subscribe() {
+
+		if (slots.incrementAndGet() > maxSubscribers) {
+			slots.decrementAndGet();
+			droppedEvents.add(1, Attributes.of(stringKey("reason"), "subscriber_limit"));
+			return null;
+		}
+
+		Subscriber subscriber = new Subscriber(newEmitter(), new ArrayBlockingQueue<>(bufferSize));
+		subscribers.add(subscriber);
+		subscriber.emitter.onCompletion(() -> unsubscribe(subscriber));
+		subscriber.emitter.onTimeout(() -> unsubscribe(subscriber));
+		subscriber.emitter.onError(t -> unsubscribe(subscriber));
+
+		// lets the consumer know that the stream is live before it loads its snapshot
+		subscriber.queue.offer(new TodoChange(sequence.get(), "ready", null, Map.of(), System.nanoTime()));
+		schedule(subscriber);
+
+		logger.info("Change feed subscriber connected, " + subscribers.size() + " active");
+		return subscriber.emitter;
+	}
+
+	SseEmitter newEmitter() {
+		return new SseEmitter(0L);
+	}
+
+	private boolean unsubscribe(Subscriber subscriber) {
+
+		if (!subscribers.remove(subscriber))
+			return false;
+		slots.decrementAndGet();
+		return true;
+	}
+
+	void publish(String type, String todo) {
+
+		if (subscribers.isEmpty())
+			return;
+
+		Map<String, String> carrier = new HashMap<>();
+		contextPropagators.getTextMapPropagator().inject(Context.current(), carrier, Map::put);
+
+		TodoChange change = new TodoChange(sequence.incrementAndGet(), type, todo, carrier, System.nanoTime());
+		for (Subscriber subscriber : subscribers) {
+			if (subscriber.queue.offer(change)) {
+				schedule(subscriber);
+			} else {
+				droppedEvents.add(1, Attributes.of(stringKey("reason"), "backpressure"));
+			}
+		}
+	}
+
+	private void schedule(Subscriber subscriber) {
+
+		if (subscriber.draining.compareAndSet(false, true)) {
+			fanOutExecutor.execute(() -> drain(subscriber));
+		}
+	}
+
+	private void drain(Subscriber subscriber) {
+
+		try {
+			TodoChange change;
+			while ((change = subscriber.queue.poll()) != null) {
+				if (change == HEARTBEAT) {
+					subscriber.emitter.send(SseEmitter.event().comment("heartbeat"));
+					continue;
+				}
+				subscriber.emitter.send(SseEmitter.event()
+						.id(Long.toString(change.sequence()))
+						.name(change.type())
+						.data(change, MediaType.APPLICATION_JSON));
+				fanOutDuration.record((System.nanoTime() - change.publishedAt()) / 1_000_000.0);
+			}
+		} catch (IOException | IllegalStateException e) {
+			unsubscribe(subscriber);
+			droppedEvents.add(subscriber.queue.size() + 1, Attributes.of(stringKey("reason"), "disconnected"));
+			subscriber.queue.clear();
+			subscriber.emitter.completeWithError(e);
+			return;
+		} finally {
+			subscriber.draining.set(false);
+		}
+
+		// an event may have been queued after the last poll but before the flag was reset
+		if (!subscriber.queue.isEmpty())
+			schedule(subscriber);
+	}
+
+	private void heartbeat() {
+
+		// idle connections are probed so that vanished clients free their slot
+		for (Subscriber subscriber : subscribers) {
+			if (subscriber.queue.isEmpty() && subscriber.queue.offer(HEARTBEAT))
+				schedule(subscriber);
+		}
+	}
+
+	@PreDestroy
+	void shutdown() {
+
+		heartbeatExecutor.shutdownNow();
+		fanOutExecutor.shutdownNow();
+		subscribers.forEach(subscriber -> {
+			if (unsubscribe(subscriber))
+				subscriber.emitter.complete();
+		});
+	}
+
+	private record Subscriber(SseEmitter emitter, BlockingQueue<TodoChange> queue, AtomicBoolean draining) {
+
+		Subscriber(SseEmitter emitter, BlockingQueue<TodoChange> queue) {
+			this(emitter, queue, new AtomicBoolean());
+		}
+	}
+
+	record TodoChange(long sequence, String type, String todo, Map<String, String> context,
+			@JsonIgnore long publishedAt) {
+	}
+
+}
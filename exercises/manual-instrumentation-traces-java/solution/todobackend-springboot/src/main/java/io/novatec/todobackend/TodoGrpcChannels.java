@@ -0,0 +1,52 @@
+package io.novatec.todobackend;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.stereotype.Component;
+
+import io.grpc.Channel;
+import io.grpc.ClientInterceptors;
+import io.grpc.Grpc;
+import io.grpc.InsecureChannelCredentials;
+import io.grpc.ManagedChannel;
+import io.opentelemetry.instrumentation.grpc.v1_6.GrpcTelemetry;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Opens channels to a TodoService whose calls get client spans and carry the
+ * current trace context in their metadata. The channels are shut down with
+ * the application context.
+ */
+@Component
+public class TodoGrpcChannels {
+
+	private final GrpcTelemetry grpcTelemetry;
+	private final List<ManagedChannel> channels = new CopyOnWriteArrayList<>();
+
+	public TodoGrpcChannels(GrpcTelemetry grpcTelemetry) {
+		this.grpcTelemetry = grpcTelemetry;
+	}
+
+	public Channel forAddress(String host, int port) {
+
+		ManagedChannel channel = Grpc.newChannelBuilderForAddress(host, port, InsecureChannelCredentials.create())
+				.build();
+		channels.add(channel);
+		return ClientInterceptors.intercept(channel, grpcTelemetry.newClientInterceptor());
+	}
+
+	@PreDestroy
+	public void shutdown() throws InterruptedException {
+
+		for (ManagedChannel channel : channels)
+			channel.shutdown();
+		for (ManagedChannel channel : channels) {
+			if (!channel.awaitTermination(5, TimeUnit.SECONDS))
+				channel.shutdownNow();
+		}
+		channels.clear();
+	}
+
+}
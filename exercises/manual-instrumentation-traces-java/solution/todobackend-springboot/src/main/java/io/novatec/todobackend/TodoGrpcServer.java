@@ -0,0 +1,63 @@
+package io.novatec.todobackend;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.grpc.Grpc;
+import io.grpc.InsecureServerCredentials;
+import io.grpc.Server;
+import io.grpc.ServerInterceptors;
+import io.opentelemetry.instrumentation.grpc.v1_6.GrpcTelemetry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+@Component
+public class TodoGrpcServer {
+
+	private Logger logger = LoggerFactory.getLogger(TodoGrpcServer.class);
+
+	private final TodoGrpcService todoGrpcService;
+	private final GrpcTelemetry grpcTelemetry;
+	private Server server;
+
+	@Value("${todobackend.grpc.port:9090}")
+	int port;
+
+	public TodoGrpcServer(TodoGrpcService todoGrpcService, GrpcTelemetry grpcTelemetry) {
+
+		this.todoGrpcService = todoGrpcService;
+		this.grpcTelemetry = grpcTelemetry;
+	}
+
+	@PostConstruct
+	public void start() throws IOException {
+
+		if (port < 0)
+			return;
+
+		// the last interceptor runs first, the deadline starts once the caller's baggage is current
+		server = Grpc.newServerBuilderForPort(port, InsecureServerCredentials.create())
+				.addService(ServerInterceptors.intercept(todoGrpcService, Deadline.serverInterceptor(),
+						grpcTelemetry.newServerInterceptor()))
+				.build()
+				.start();
+		logger.info("gRPC TodoService listening on port " + server.getPort());
+	}
+
+	int getPort() {
+		return server == null ? -1 : server.getPort();
+	}
+
+	@PreDestroy
+	public void stop() throws InterruptedException {
+
+		if (server != null)
+			server.shutdown().awaitTermination(5, TimeUnit.SECONDS);
+	}
+
+}
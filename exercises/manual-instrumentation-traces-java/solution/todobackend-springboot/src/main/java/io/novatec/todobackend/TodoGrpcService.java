@@ -0,0 +1,144 @@
+package io.novatec.todobackend;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+import io.novatec.todobackend.grpc.BatchAddResponse;
+import io.novatec.todobackend.grpc.ListTodosRequest;
+import io.novatec.todobackend.grpc.RemoveTodoResponse;
+import io.novatec.todobackend.grpc.TodoMessage;
+import io.novatec.todobackend.grpc.TodoPage;
+import io.novatec.todobackend.grpc.TodoServiceGrpc;
+
+@Component
+public class TodoGrpcService extends TodoServiceGrpc.TodoServiceImplBase {
+
+	static final int DEFAULT_PAGE_SIZE = 500;
+	static final int MAX_PAGE_SIZE = 10_000;
+
+	private Logger logger = LoggerFactory.getLogger(TodoGrpcService.class);
+
+	private final TodoRepository todoRepository;
+	private final TodoChangeFeed todoChangeFeed;
+	private final Deadline deadline;
+
+	public TodoGrpcService(TodoRepository todoRepository, TodoChangeFeed todoChangeFeed, Deadline deadline) {
+
+		this.todoRepository = todoRepository;
+		this.todoChangeFeed = todoChangeFeed;
+		this.deadline = deadline;
+	}
+
+	@Override
+	public void list(ListTodosRequest request, StreamObserver<TodoPage> responseObserver) {
+
+		// todos are streamed in pages, one message per todo costs a frame and a span event each
+		int pageSize = request.getPageSize() > 0 ? Math.min(request.getPageSize(), MAX_PAGE_SIZE) : DEFAULT_PAGE_SIZE;
+
+		if (deadlineExceeded("repository", responseObserver))
+			return;
+
+		TodoPage.Builder page = TodoPage.newBuilder();
+		for (Todo todo : todoRepository.findAll()) {
+			page.addTodos(todo.getTodo());
+			if (page.getTodosCount() == pageSize) {
+				responseObserver.onNext(page.build());
+				page.clear();
+			}
+		}
+		if (page.getTodosCount() > 0)
+			responseObserver.onNext(page.build());
+		responseObserver.onCompleted();
+	}
+
+	@Override
+	public void add(TodoMessage request, StreamObserver<TodoMessage> responseObserver) {
+
+		if (!isValid(request.getTodo())) {
+			responseObserver.onError(Status.INVALID_ARGUMENT.withDescription("todo must not be blank").asRuntimeException());
+			return;
+		}
+		if (deadlineExceeded("repository", responseObserver))
+			return;
+
+		if (todoRepository.insertIfAbsent(request.getTodo()) > 0)
+			todoChangeFeed.publish("added", request.getTodo());
+		logger.info("gRPC Add " + request.getTodo());
+
+		responseObserver.onNext(request);
+		responseObserver.onCompleted();
+	}
+
+	@Override
+	public void remove(TodoMessage request, StreamObserver<RemoveTodoResponse> responseObserver) {
+
+		if (deadlineExceeded("repository", responseObserver))
+			return;
+		if (todoRepository.deleteIfPresent(request.getTodo()) > 0)
+			todoChangeFeed.publish("removed", request.getTodo());
+		logger.info("gRPC Remove " + request.getTodo());
+
+		responseObserver.onNext(RemoveTodoResponse.newBuilder().setRemoved(request.getTodo()).build());
+		responseObserver.onCompleted();
+	}
+
+	@Override
+	public StreamObserver<TodoMessage> batchAdd(StreamObserver<BatchAddResponse> responseObserver) {
+
+		List<String> batch = new ArrayList<>();
+
+		return new StreamObserver<>() {
+
+			@Override
+			public void onNext(TodoMessage message) {
+				if (isValid(message.getTodo()))
+					batch.add(message.getTodo());
+			}
+
+			@Override
+			public void onError(Throwable t) {
+				logger.info("gRPC BatchAdd cancelled by client: " + t.getMessage());
+			}
+
+			@Override
+			public void onCompleted() {
+				int added = 0;
+				for (String todo : batch) {
+					// todos added before the deadline passed stay added, the caller learns nothing about them
+					if (deadlineExceeded("repository", responseObserver))
+						return;
+					if (todoRepository.insertIfAbsent(todo) > 0) {
+						todoChangeFeed.publish("added", todo);
+						added++;
+					}
+				}
+				logger.info("gRPC BatchAdd " + added + " of " + batch.size() + " todos");
+
+				responseObserver.onNext(BatchAddResponse.newBuilder().setAdded(added).build());
+				responseObserver.onCompleted();
+			}
+		};
+	}
+
+	private boolean deadlineExceeded(String stage, StreamObserver<?> responseObserver) {
+
+		try {
+			deadline.check(stage);
+			return false;
+		} catch (Deadline.DeadlineExceededException e) {
+			responseObserver.onError(Status.DEADLINE_EXCEEDED.withDescription(e.getMessage()).asRuntimeException());
+			return true;
+		}
+	}
+
+	boolean isValid(String todo) {
+		return todo != null && !todo.isBlank();
+	}
+
+}
@@ -6,8 +6,6 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
-import io.opentelemetry.context.Context;
-import io.opentelemetry.context.propagation.ContextPropagators;
 import io.opentelemetry.context.propagation.TextMapGetter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -15,13 +13,20 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import io.opentelemetry.api.OpenTelemetry;
 import io.opentelemetry.api.common.Attributes;
@@ -47,7 +52,6 @@ public class TodobackendApplication {
 	private Logger logger = LoggerFactory.getLogger(TodobackendApplication.class);
 
 	private Tracer tracer;
-	private ContextPropagators contextPropagators;
 
 	@Value("${HOSTNAME:not_set}")
 	String hostname;
@@ -58,10 +62,18 @@ public class TodobackendApplication {
 	@Autowired
 	TodoRepository todoRepository;
 
+	@Autowired
+	TodoChangeFeed todoChangeFeed;
+
+	@Autowired
+	Deadline deadline;
+
+	@Autowired
+	ExceptionRecorder exceptionRecorder;
+
 	public TodobackendApplication(OpenTelemetry openTelemetry) {
 
 		this.tracer = openTelemetry.getTracer(TodobackendApplication.class.getName(), "0.1.0");
-		this.contextPropagators = openTelemetry.getPropagators();
 	}
 
 	private String getInstanceId() {
@@ -85,25 +97,53 @@ public class TodobackendApplication {
 		return "fixed!";
 	}
 
-	@GetMapping("/todos/")
-	List<String> getTodos() {
+	@GetMapping(path = "/todos/", produces = { MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE,
+			"application/x-jackson-smile" })
+	List<String> getTodos(HttpServletRequest request) {
 
 		List<String> todos = new ArrayList<String>();
 
-		todoRepository.findAll().forEach(todo -> todos.add(todo.getTodo()));
+		// current while the replica or primary is picked, which records the route on it
+		Span span = tracer.spanBuilder("getTodos")
+				.setSpanKind(SpanKind.SERVER)
+				.setAttribute(HttpAttributes.HTTP_REQUEST_METHOD, request.getMethod())
+				.setAttribute(HttpAttributes.HTTP_ROUTE, request.getRequestURL().toString())
+				.startSpan();
+
+		try (Scope scope = span.makeCurrent()) {
+			deadline.check("repository");
+			todoRepository.findAll().forEach(todo -> todos.add(todo.getTodo()));
+			span.setAttribute(HttpAttributes.HTTP_RESPONSE_STATUS_CODE, HttpServletResponse.SC_OK);
+		} catch (Deadline.DeadlineExceededException e) {
+			span.setStatus(StatusCode.ERROR, e.getMessage());
+			span.setAttribute(HttpAttributes.HTTP_RESPONSE_STATUS_CODE, HttpServletResponse.SC_GATEWAY_TIMEOUT);
+			throw e;
+		} catch (RuntimeException e) {
+			span.setStatus(StatusCode.ERROR, "Error on server side!");
+			exceptionRecorder.record(span, e);
+			throw e;
+		} finally {
+			span.end();
+		}
 		logger.info("GET /todos/ " + todos.toString());
 
 		return todos;
 	}
 
+	@GetMapping(path = "/todos/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+	ResponseEntity<SseEmitter> getTodoChanges() {
+
+		SseEmitter emitter = todoChangeFeed.subscribe();
+		if (emitter == null)
+			return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+		return ResponseEntity.ok(emitter);
+	}
+
 	@PostMapping("/todos/{todo}")
 	String addTodo(HttpServletRequest request, HttpServletResponse response, @PathVariable String todo) {
 
-		Context parentContext = contextPropagators.getTextMapPropagator()
-				.extract(Context.current(), request, new HttpRequestGetter());
-
+		// the caller's context is current, PropagatedContextFilter extracted it
 		Span span = tracer.spanBuilder("addTodo")
-				.setParent(parentContext)
 				.setSpanKind(SpanKind.SERVER)
 				.startSpan();
 
@@ -119,9 +159,13 @@ public class TodobackendApplication {
 			this.someInternalMethod(todo);
 			response.setStatus(HttpServletResponse.SC_CREATED);
 			span.setAttribute(HttpAttributes.HTTP_RESPONSE_STATUS_CODE, HttpServletResponse.SC_CREATED);
+		} catch (Deadline.DeadlineExceededException e) {
+			span.setStatus(StatusCode.ERROR, e.getMessage());
+			response.setStatus(HttpServletResponse.SC_GATEWAY_TIMEOUT);
+			span.setAttribute(HttpAttributes.HTTP_RESPONSE_STATUS_CODE, HttpServletResponse.SC_GATEWAY_TIMEOUT);
 		} catch (Throwable t) {
 			span.setStatus(StatusCode.ERROR, "Error on server side!");
-			span.recordException(t);
+			exceptionRecorder.record(span, t);
 			response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
 			span.setAttribute(HttpAttributes.HTTP_RESPONSE_STATUS_CODE, HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
 		} finally {
@@ -138,15 +182,22 @@ public class TodobackendApplication {
 
 		Span childSpan = tracer.spanBuilder("someInternalMethod").setSpanKind(SpanKind.INTERNAL).startSpan();
 
-		todoRepository.save(new Todo(todo));
-
-		if (todo.equals("slow")) {
-			try {
-				Thread.sleep(1000);
-			} catch (InterruptedException e) {
-				e.printStackTrace();
-			}
+		// the deadline is not checked after the insert, a committed todo is not reported as a timeout
+		try {
+			if (todo.equals("slow"))
+				deadline.sleep("slow_operation", 1000);
+			deadline.check("repository");
+		} catch (InterruptedException e) {
+			e.printStackTrace();
+		} catch (Deadline.DeadlineExceededException e) {
+			childSpan.end();
+			throw e;
 		}
+
+		// published as soon as the insert committed, whatever happens to the request afterwards
+		if (todoRepository.insertIfAbsent(todo) > 0)
+			todoChangeFeed.publish("added", todo);
+
 		if (todo.equals("fail")) {
 
 			System.out.println("Failing ...");
@@ -167,7 +218,9 @@ public class TodobackendApplication {
 	@DeleteMapping("/todos/{todo}")
 	String removeTodo(@PathVariable String todo) {
 
-		todoRepository.deleteById(todo);
+		deadline.check("repository");
+		if (todoRepository.deleteIfPresent(todo) > 0)
+			todoChangeFeed.publish("removed", todo);
 		logger.info("DELETE /todos/ " + todo.toString());
 		return "removed " + todo;
 
@@ -217,4 +270,19 @@ class Todo {
 
 interface TodoRepository extends CrudRepository<Todo, String> {
 
+	@Override
+	@Transactional(readOnly = true)
+	Iterable<Todo> findAll();
+
+	// concurrent requests for the same todo neither fail nor need a lock, the row count tells who won
+	@Modifying
+	@Transactional
+	@Query(value = "INSERT INTO todo (todo) VALUES (:todo) ON CONFLICT DO NOTHING", nativeQuery = true)
+	int insertIfAbsent(String todo);
+
+	@Modifying
+	@Transactional
+	@Query("DELETE FROM Todo t WHERE t.todo = :todo")
+	int deleteIfPresent(String todo);
+
 }
\ No newline at end of file
@@ -0,0 +1,159 @@
+package io.novatec.todobackend;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.web.server.ResponseStatusException;
+
+import io.opentelemetry.api.OpenTelemetry;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.HttpServletResponse;
+
+public class AdmissionControlFilterTests {
+
+	static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+	static final long SLOW = TimeUnit.MILLISECONDS.toNanos(500);
+	static final long WINDOW = TimeUnit.MILLISECONDS.toNanos(260);
+
+	final AdmissionControlFilter filter = new AdmissionControlFilter(OpenTelemetry.noop(), true, 10, 2, 12, 250, 0.8, 1);
+
+	// completion times are passed explicitly, starting well after the last cut
+	long now = TimeUnit.SECONDS.toNanos(1);
+
+	@Test
+	void limitGrowsByOnePerLimitOfFastRequests() {
+
+		for (int i = 0; i < 10; i++)
+			filter.onComplete(FAST, 10, false, now += FAST);
+
+		assertThat(filter.limit()).isCloseTo(11, within(0.1));
+	}
+
+	@Test
+	void limitDoesNotGrowWhileMostOfItIsUnused() {
+
+		for (int i = 0; i < 100; i++)
+			filter.onComplete(FAST, 4, false, now += FAST);
+
+		assertThat(filter.limit()).isEqualTo(10);
+	}
+
+	@Test
+	void limitStopsGrowingAtTheMaximum() {
+
+		for (int i = 0; i < 1000; i++)
+			filter.onComplete(FAST, 12, false, now += FAST);
+
+		assertThat(filter.limit()).isEqualTo(12);
+	}
+
+	@Test
+	void slowRequestsCutTheLimitOncePerLatencyWindow() {
+
+		filter.onComplete(SLOW, 10, false, now += FAST);
+		assertThat(filter.limit()).isEqualTo(9);
+
+		// queued behind the same overload, not cut again
+		filter.onComplete(SLOW, 10, false, now += FAST);
+		filter.onComplete(FAST, 10, true, now += FAST);
+		assertThat(filter.limit()).isEqualTo(9);
+
+		filter.onComplete(SLOW, 10, false, now += WINDOW);
+		assertThat(filter.limit()).isCloseTo(8.1, within(0.01));
+	}
+
+	@Test
+	void saturatedRequestsCutTheLimitDownToTheMinimum() {
+
+		for (int i = 0; i < 30; i++)
+			filter.onComplete(FAST, 10, true, now += WINDOW);
+
+		assertThat(filter.limit()).isEqualTo(2);
+	}
+
+	@Test
+	void applicationErrorsDoNotCutTheLimit() throws Exception {
+
+		for (int i = 0; i < 50; i++) {
+			MockHttpServletResponse response = new MockHttpServletResponse();
+			filter.doFilter(request("POST"), response, new MockFilterChain() {
+
+				@Override
+				public void doFilter(ServletRequest request, ServletResponse response) {
+					((HttpServletResponse) response).setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+				}
+			});
+			assertThat(response.getStatus()).isEqualTo(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+
+			assertThatThrownBy(() -> filter.doFilter(request("GET"), new MockHttpServletResponse(), new MockFilterChain() {
+
+				@Override
+				public void doFilter(ServletRequest request, ServletResponse response) {
+					throw new ResponseStatusException(HttpStatus.GATEWAY_TIMEOUT);
+				}
+			})).isInstanceOf(ResponseStatusException.class);
+		}
+
+		assertThat(filter.limit()).isEqualTo(10);
+	}
+
+	@Test
+	void poolTimeoutsCutTheLimit() {
+
+		assertThatThrownBy(() -> filter.doFilter(request("GET"), new MockHttpServletResponse(), new MockFilterChain() {
+
+			@Override
+			public void doFilter(ServletRequest request, ServletResponse response) {
+				throw new CannotCreateTransactionException("Could not open JPA EntityManager for transaction",
+						new SQLTransientConnectionException("primary - Connection is not available"));
+			}
+		})).isInstanceOf(CannotCreateTransactionException.class);
+
+		assertThat(filter.limit()).isEqualTo(9);
+	}
+
+	@Test
+	void writesAreShedBeforeReads() throws Exception {
+
+		for (int i = 0; i < 30; i++)
+			filter.onComplete(SLOW, 10, false, now += WINDOW);
+		assertThat(filter.limit()).isEqualTo(2);
+
+		// a read holds one of the two slots while the next requests arrive
+		MockHttpServletResponse[] nested = new MockHttpServletResponse[2];
+		filter.doFilter(request("GET"), new MockHttpServletResponse(), new MockFilterChain() {
+
+			@Override
+			public void doFilter(ServletRequest request, ServletResponse response) {
+				try {
+					nested[0] = new MockHttpServletResponse();
+					filter.doFilter(request("POST"), nested[0], new MockFilterChain());
+					nested[1] = new MockHttpServletResponse();
+					filter.doFilter(request("GET"), nested[1], new MockFilterChain());
+				} catch (Exception e) {
+					throw new IllegalStateException(e);
+				}
+			}
+		});
+
+		assertThat(nested[0].getStatus()).isEqualTo(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+		assertThat(nested[0].getHeader("Retry-After")).isEqualTo("1");
+		assertThat(nested[1].getStatus()).isEqualTo(HttpServletResponse.SC_OK);
+	}
+
+	static MockHttpServletRequest request(String method) {
+		return new MockHttpServletRequest(method, "/todos/");
+	}
+
+}
@@ -0,0 +1,66 @@
+package io.novatec.todobackend;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.jupiter.api.Test;
+
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.baggage.Baggage;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.Scope;
+
+public class DeadlineTests {
+
+	final Deadline deadline = new Deadline(OpenTelemetry.noop());
+
+	@Test
+	void budgetIsCountedDownFromTheStart() {
+
+		try (Scope scope = Deadline.start(withBudget("60000")).makeCurrent()) {
+			assertThatCode(() -> deadline.check("repository")).doesNotThrowAnyException();
+		}
+		try (Scope scope = Deadline.start(withBudget("-1")).makeCurrent()) {
+			assertThatThrownBy(() -> deadline.check("repository"))
+					.isInstanceOf(Deadline.DeadlineExceededException.class)
+					.hasMessageEndingWith("before repository");
+		}
+	}
+
+	@Test
+	void sleepStopsOnceTheBudgetIsUsedUp() {
+
+		try (Scope scope = Deadline.start(withBudget("100")).makeCurrent()) {
+			long start = System.nanoTime();
+			assertThatThrownBy(() -> deadline.sleep("slow_operation", 5000))
+					.isInstanceOf(Deadline.DeadlineExceededException.class);
+			assertThat(System.nanoTime() - start).isLessThan(1_000_000_000L);
+		}
+	}
+
+	@Test
+	void missingOrMalformedBudgetsAreIgnored() {
+
+		try (Scope scope = Deadline.start(Context.root()).makeCurrent()) {
+			assertThatCode(() -> deadline.check("repository")).doesNotThrowAnyException();
+		}
+		try (Scope scope = Deadline.start(withBudget("soon")).makeCurrent()) {
+			assertThatCode(() -> deadline.check("repository")).doesNotThrowAnyException();
+		}
+	}
+
+	@Test
+	void budgetOnlyAppliesWhereTheRequestStarted() {
+
+		// the baggage alone, without a started countdown, has no deadline
+		try (Scope scope = withBudget("-1").makeCurrent()) {
+			assertThatCode(() -> deadline.check("repository")).doesNotThrowAnyException();
+		}
+	}
+
+	static Context withBudget(String millis) {
+		return Context.root().with(Baggage.builder().put(Deadline.BUDGET_KEY, millis).build());
+	}
+
+}
@@ -0,0 +1,138 @@
+package io.novatec.todobackend;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.exporter.internal.otlp.logs.LogsRequestMarshaler;
+import io.opentelemetry.exporter.internal.otlp.traces.TraceRequestMarshaler;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.logs.LogRecordProcessor;
+import io.opentelemetry.sdk.logs.ReadWriteLogRecord;
+import io.opentelemetry.sdk.logs.SdkLoggerProvider;
+import io.opentelemetry.sdk.logs.data.LogRecordData;
+import io.opentelemetry.sdk.trace.ReadWriteSpan;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import io.opentelemetry.sdk.trace.data.SpanData;
+
+/**
+ * OTLP bytes exported per failed request with {@link Span#recordException}
+ * and with {@link ExceptionRecorder}, for the same exception thrown 80 frames
+ * deep, about as deep as a controller under Tomcat and Spring MVC, and for a
+ * mix of a few distinct exceptions. Spans and log records are serialized the
+ * way the OTLP exporters send them.
+ *
+ * Run with:
+ * mvn test-compile exec:java -Dexec.mainClass=io.novatec.todobackend.ExceptionRecorderBenchmark -Dexec.classpathScope=test
+ */
+public class ExceptionRecorderBenchmark {
+
+	static final int REQUESTS = 10_000;
+	static final int DEPTH = 80;
+
+	public static void main(String[] args) {
+
+		System.out.printf("%-22s %-10s %12s %12s %12s%n", "recording", "exceptions", "span B/req", "log B/req",
+				"total B/req");
+		for (int distinct : new int[] { 1, 10 }) {
+			run("Span.recordException", distinct, (recorder, span, exception) -> span.recordException(exception));
+			run("ExceptionRecorder", distinct, ExceptionRecorder::record);
+		}
+	}
+
+	interface Recording {
+
+		void record(ExceptionRecorder recorder, Span span, Throwable exception);
+	}
+
+	static void run(String name, int distinct, Recording recording) {
+
+		CollectingSpans collectingSpans = new CollectingSpans();
+		CollectingLogs collectingLogs = new CollectingLogs();
+		OpenTelemetrySdk openTelemetry = OpenTelemetrySdk.builder()
+				.setTracerProvider(SdkTracerProvider.builder().addSpanProcessor(collectingSpans).build())
+				.setLoggerProvider(SdkLoggerProvider.builder().addLogRecordProcessor(collectingLogs).build())
+				.build();
+		Tracer tracer = openTelemetry.getTracer("benchmark");
+		ExceptionRecorder recorder = new ExceptionRecorder(openTelemetry, 300, 5, 1000);
+
+		for (int i = 0; i < REQUESTS; i++) {
+			Span span = tracer.spanBuilder("addTodo").setSpanKind(SpanKind.SERVER).startSpan();
+			try {
+				fail(DEPTH, i % distinct);
+			} catch (RuntimeException e) {
+				recording.record(recorder, span, e);
+			}
+			span.end();
+		}
+
+		long spanBytes = TraceRequestMarshaler.create(collectingSpans.spans).getBinarySerializedSize();
+		long logBytes = collectingLogs.logs.isEmpty() ? 0
+				: LogsRequestMarshaler.create(collectingLogs.logs).getBinarySerializedSize();
+		System.out.printf("%-22s %-10d %12d %12d %12d%n", name, distinct, spanBytes / REQUESTS, logBytes / REQUESTS,
+				(spanBytes + logBytes) / REQUESTS);
+		openTelemetry.close();
+	}
+
+	// every kind of exception is thrown from its own line, so each gets a stack trace of its own
+	static void fail(int depth, int kind) {
+
+		if (depth > 0) {
+			fail(depth - 1, kind);
+			return;
+		}
+		switch (kind) {
+		case 0 -> throw new RuntimeException();
+		case 1 -> throw new IllegalStateException("todo rejected");
+		case 2 -> throw new IllegalArgumentException("todo invalid");
+		case 3 -> throw new UnsupportedOperationException();
+		case 4 -> throw new RuntimeException(new IllegalStateException("cause"));
+		case 5 -> throw new IllegalStateException("conflict", new RuntimeException());
+		case 6 -> throw new ArithmeticException();
+		case 7 -> throw new IndexOutOfBoundsException();
+		case 8 -> throw new NullPointerException();
+		default -> throw new ClassCastException();
+		}
+	}
+
+	static class CollectingSpans implements SpanProcessor {
+
+		final Collection<SpanData> spans = new ArrayList<>();
+
+		@Override
+		public void onStart(Context parentContext, ReadWriteSpan span) {
+		}
+
+		@Override
+		public boolean isStartRequired() {
+			return false;
+		}
+
+		@Override
+		public void onEnd(ReadableSpan span) {
+			spans.add(span.toSpanData());
+		}
+
+		@Override
+		public boolean isEndRequired() {
+			return true;
+		}
+	}
+
+	static class CollectingLogs implements LogRecordProcessor {
+
+		final List<LogRecordData> logs = new ArrayList<>();
+
+		@Override
+		public void onEmit(Context context, ReadWriteLogRecord logRecord) {
+			logs.add(logRecord.toLogRecordData());
+		}
+	}
+
+}
@@ -0,0 +1,77 @@
+package io.novatec.todobackend;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.mock.env.MockEnvironment;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.context.Scope;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+
+public class JdbcTracingTests {
+
+	final InMemorySpanExporter spans = InMemorySpanExporter.create();
+	final OpenTelemetrySdk openTelemetry = OpenTelemetrySdk.builder()
+			.setTracerProvider(SdkTracerProvider.builder().addSpanProcessor(SimpleSpanProcessor.create(spans)).build())
+			.build();
+	final HikariDataSource pool = new HikariDataSource();
+	final JdbcTracing.TracingDataSource dataSource;
+
+	JdbcTracingTests() {
+
+		pool.setJdbcUrl("jdbc:h2:mem:jdbc-tracing");
+		DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+		beanFactory.registerSingleton("openTelemetry", openTelemetry);
+		dataSource = new JdbcTracing.TracingDataSource(pool, beanFactory.getBeanProvider(OpenTelemetry.class),
+				new MockEnvironment());
+	}
+
+	@AfterEach
+	void close() throws Exception {
+
+		dataSource.close();
+		openTelemetry.close();
+	}
+
+	@Test
+	void queryEndsWhenItsStatementIsClosed() throws Exception {
+
+		Span parent = openTelemetry.getTracer("test").spanBuilder("request").startSpan();
+		try (Scope scope = parent.makeCurrent(); Connection connection = dataSource.getConnection()) {
+			PreparedStatement statement = connection.prepareStatement("select 1 from dual");
+			ResultSet resultSet = statement.executeQuery();
+			resultSet.next();
+			assertThat(spans.getFinishedSpanItems()).isEmpty();
+
+			// the result set is left open
+			statement.close();
+		}
+		parent.end();
+
+		assertThat(spans.getFinishedSpanItems()).extracting(span -> span.getName()).containsExactly("SELECT dual", "request");
+		assertThat(spans.getFinishedSpanItems().get(0).getAttributes().get(JdbcTracing.DB_RETURNED_ROWS)).isEqualTo(1);
+	}
+
+	@Test
+	void closingTheTracingDataSourceClosesThePool() throws Exception {
+
+		dataSource.getConnection().close();
+		dataSource.close();
+
+		assertThat(pool.isClosed()).isTrue();
+	}
+
+}
@@ -0,0 +1,266 @@
+package io.novatec.todobackend;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpServer;
+
+import io.grpc.Attributes;
+import io.grpc.MethodDescriptor;
+import io.grpc.Server;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.ServerStreamTracer;
+import io.grpc.ServerTransportFilter;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import io.grpc.stub.ServerCalls;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.Scope;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.logs.export.LogRecordExporter;
+import io.opentelemetry.sdk.metrics.export.MetricExporter;
+import io.opentelemetry.sdk.trace.ReadWriteSpan;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+
+/**
+ * Throughput, CPU and bytes on the wire of exporting batches of 512 spans
+ * (server spans with their JDBC child spans) through the
+ * {@link OtlpExporterFactory} exporters, over gRPC and OTLP/HTTP protobuf,
+ * uncompressed and with gzip. An in-process collector accepts everything and
+ * counts the request bytes as they arrive, so the CPU time includes its
+ * decompression. Also counts the connections the exporters of all three
+ * signals open, from one factory and from one factory each.
+ *
+ * Run with:
+ * mvn test-compile exec:java -Dexec.mainClass=io.novatec.todobackend.OtlpExportBenchmark -Dexec.classpathScope=test
+ */
+public class OtlpExportBenchmark {
+
+	static final int BATCH = 512;
+	static final int EXPORTS = 300;
+	static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+	static final AtomicLong receivedBytes = new AtomicLong();
+	static final AtomicInteger grpcConnections = new AtomicInteger();
+
+	public static void main(String[] args) throws Exception {
+
+		Server grpcCollector = grpcCollector();
+		HttpServer httpCollector = httpCollector();
+		String grpcEndpoint = "http://localhost:" + grpcCollector.getPort();
+		String httpEndpoint = "http://localhost:" + httpCollector.getAddress().getPort();
+		List<SpanData> batch = batch();
+		try {
+			System.out.printf("%-14s %-12s %12s %12s %14s %12s%n", "protocol", "compression", "ms/export",
+					"spans/s", "CPU ms/export", "KB/export");
+			for (int round = 0; round < 3; round++) {
+				for (String compression : new String[] { "none", "gzip" }) {
+					run(OtlpExporterFactory.Protocol.GRPC, grpcEndpoint, compression, batch);
+					run(OtlpExporterFactory.Protocol.HTTP_PROTOBUF, httpEndpoint, compression, batch);
+				}
+			}
+			System.out.printf("%ngRPC connections for traces, metrics and logs: %d with one factory, %d with one each%n",
+					connections(grpcEndpoint, 1), connections(grpcEndpoint, 3));
+		} finally {
+			grpcCollector.shutdownNow();
+			httpCollector.stop(0);
+		}
+	}
+
+	static void run(OtlpExporterFactory.Protocol protocol, String endpoint, String compression, List<SpanData> batch) {
+
+		try (OtlpExporterFactory factory = new OtlpExporterFactory(protocol, endpoint, compression, TIMEOUT,
+				TIMEOUT, 2)) {
+			SpanExporter exporter = factory.spanExporter();
+			for (int i = 0; i < EXPORTS / 10; i++)
+				export(exporter, batch);
+
+			com.sun.management.OperatingSystemMXBean os = (com.sun.management.OperatingSystemMXBean) ManagementFactory
+					.getOperatingSystemMXBean();
+			receivedBytes.set(0);
+			long cpu = os.getProcessCpuTime();
+			long start = System.nanoTime();
+			for (int i = 0; i < EXPORTS; i++)
+				export(exporter, batch);
+			double millis = (System.nanoTime() - start) / 1e6 / EXPORTS;
+			double cpuMillis = (os.getProcessCpuTime() - cpu) / 1e6 / EXPORTS;
+
+			System.out.printf("%-14s %-12s %12.2f %12.0f %14.2f %12.1f%n", protocol, compression, millis,
+					BATCH / millis * 1000, cpuMillis, receivedBytes.get() / 1024.0 / EXPORTS);
+			exporter.shutdown().join(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+		}
+	}
+
+	static void export(SpanExporter exporter, List<SpanData> batch) {
+
+		CompletableResultCode result = exporter.export(batch).join(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+		if (!result.isSuccess())
+			throw new IllegalStateException("Export failed");
+	}
+
+	// every exporter sends one empty request, which is enough to connect
+	static int connections(String endpoint, int factories) {
+
+		grpcConnections.set(0);
+		List<OtlpExporterFactory> opened = new ArrayList<>();
+		for (int i = 0; i < factories; i++)
+			opened.add(new OtlpExporterFactory(OtlpExporterFactory.Protocol.GRPC, endpoint, "none", TIMEOUT, TIMEOUT, 2));
+		SpanExporter spans = opened.get(0).spanExporter();
+		MetricExporter metrics = opened.get(1 % factories).metricExporter();
+		LogRecordExporter logs = opened.get(2 % factories).logRecordExporter();
+		List<SpanData> oneSpan = batch().subList(0, 1);
+		spans.export(oneSpan).join(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+		metrics.export(List.of()).join(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+		logs.export(List.of()).join(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+		int connections = grpcConnections.get();
+		spans.shutdown();
+		metrics.shutdown();
+		logs.shutdown();
+		opened.forEach(OtlpExporterFactory::close);
+		return connections;
+	}
+
+	static List<SpanData> batch() {
+
+		CollectingSpans collectingSpans = new CollectingSpans();
+		SdkTracerProvider tracerProvider = SdkTracerProvider.builder().addSpanProcessor(collectingSpans).build();
+		Tracer tracer = tracerProvider.get("benchmark");
+		for (int i = 0; collectingSpans.spans.size() < BATCH; i++) {
+			Span server = tracer.spanBuilder("POST /todos/{todo}").setSpanKind(SpanKind.SERVER)
+					.setAttribute("http.request.method", "POST")
+					.setAttribute("http.route", "/todos/{todo}")
+					.setAttribute("url.path", "/todos/todo-" + i)
+					.setAttribute("user_agent.original", "Mozilla/5.0 (X11; Linux x86_64) Gecko/20100101 Firefox/131.0")
+					.setAttribute("http.response.status_code", 201L)
+					.startSpan();
+			try (Scope scope = server.makeCurrent()) {
+				tracer.spanBuilder("INSERT todobackend.todo").setSpanKind(SpanKind.CLIENT)
+						.setAttribute("db.system", "h2")
+						.setAttribute("db.query.text", "insert into todo (todo) values (?)")
+						.startSpan().end();
+			}
+			server.end();
+		}
+		tracerProvider.close();
+		return collectingSpans.spans;
+	}
+
+	static Server grpcCollector() throws IOException {
+
+		NettyServerBuilder builder = NettyServerBuilder.forPort(0)
+				.addStreamTracerFactory(new ServerStreamTracer.Factory() {
+
+					@Override
+					public ServerStreamTracer newServerStreamTracer(String fullMethodName, io.grpc.Metadata headers) {
+						return new ServerStreamTracer() {
+
+							@Override
+							public void inboundWireSize(long bytes) {
+								receivedBytes.addAndGet(bytes);
+							}
+						};
+					}
+				})
+				.addTransportFilter(new ServerTransportFilter() {
+
+					@Override
+					public Attributes transportReady(Attributes transportAttrs) {
+						grpcConnections.incrementAndGet();
+						return transportAttrs;
+					}
+				});
+		for (String signal : new String[] { "trace.v1.TraceService", "metrics.v1.MetricsService", "logs.v1.LogsService" })
+			builder.addService(acceptingService("opentelemetry.proto.collector." + signal));
+		return builder.build().start();
+	}
+
+	static ServerServiceDefinition acceptingService(String serviceName) {
+
+		MethodDescriptor<byte[], byte[]> export = MethodDescriptor.<byte[], byte[]>newBuilder()
+				.setType(MethodDescriptor.MethodType.UNARY)
+				.setFullMethodName(MethodDescriptor.generateFullMethodName(serviceName, "Export"))
+				.setRequestMarshaller(new BytesMarshaller())
+				.setResponseMarshaller(new BytesMarshaller())
+				.build();
+		return ServerServiceDefinition.builder(serviceName)
+				.addMethod(export, ServerCalls.asyncUnaryCall((request, response) -> {
+					response.onNext(new byte[0]);
+					response.onCompleted();
+				}))
+				.build();
+	}
+
+	static HttpServer httpCollector() throws IOException {
+
+		HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/", exchange -> {
+			try (InputStream body = exchange.getRequestBody()) {
+				receivedBytes.addAndGet(body.readAllBytes().length);
+			}
+			exchange.getResponseHeaders().set("Content-Type", "application/x-protobuf");
+			exchange.sendResponseHeaders(200, -1);
+			exchange.close();
+		});
+		server.start();
+		return server;
+	}
+
+	static class BytesMarshaller implements MethodDescriptor.Marshaller<byte[]> {
+
+		@Override
+		public InputStream stream(byte[] value) {
+			return new ByteArrayInputStream(value);
+		}
+
+		@Override
+		public byte[] parse(InputStream stream) {
+
+			try {
+				return stream.readAllBytes();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	static class CollectingSpans implements SpanProcessor {
+
+		final List<SpanData> spans = new ArrayList<>();
+
+		@Override
+		public void onStart(Context parentContext, ReadWriteSpan span) {
+		}
+
+		@Override
+		public boolean isStartRequired() {
+			return false;
+		}
+
+		@Override
+		public void onEnd(ReadableSpan span) {
+			spans.add(span.toSpanData());
+		}
+
+		@Override
+		public boolean isEndRequired() {
+			return true;
+		}
+	}
+
+}
@@ -0,0 +1,141 @@
+package io.novatec.todobackend;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import io.opentelemetry.sdk.trace.ReadableSpan;
+
+/**
+ * Two independent H2 databases stand in for primary and replica, so a row
+ * that only exists in one of them shows which way a statement was routed.
+ */
+@SpringBootTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:primary;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+		"todobackend.datasource.replica.url=" + ReadWriteRoutingIntegrationTests.REPLICA_URL,
+		"todobackend.datasource.read-your-writes-ms=60000",
+		"todobackend.grpc.port=-1" })
+@AutoConfigureMockMvc
+public class ReadWriteRoutingIntegrationTests {
+
+	static final String REPLICA_URL = "jdbc:h2:mem:replica;DB_CLOSE_DELAY=-1;"
+			+ "INIT=CREATE TABLE IF NOT EXISTS todo (todo varchar(255) not null primary key)";
+
+	@Autowired
+	TodoRepository todoRepository;
+
+	@Autowired
+	PlatformTransactionManager transactionManager;
+
+	@Autowired
+	MockMvc mockMvc;
+
+	@SpyBean
+	ReconfigurableBatchSpanProcessor spanProcessor;
+
+	@BeforeEach
+	void replicate() throws SQLException {
+
+		try (Connection replica = DriverManager.getConnection(REPLICA_URL, "sa", "")) {
+			replica.createStatement().execute("MERGE INTO todo (todo) KEY (todo) VALUES ('replicated')");
+		}
+	}
+
+	@AfterEach
+	void cleanUp() {
+
+		todoRepository.deleteAll();
+		RequestContextHolder.resetRequestAttributes();
+	}
+
+	@Test
+	void readOnlyTransactionsGoToTheReplica() {
+
+		asClient("writer");
+		todoRepository.save(new Todo("written"));
+
+		asClient("reader");
+		assertThat(todos()).containsExactly("replicated");
+		assertThat(todoRepository.existsById("written")).isFalse();
+	}
+
+	@Test
+	void clientReadsItsOwnWritesFromThePrimary() {
+
+		asClient("writer");
+		todoRepository.save(new Todo("written"));
+		assertThat(todos()).containsExactly("written");
+
+		asClient("someone-else");
+		assertThat(todos()).containsExactly("replicated");
+	}
+
+	@Test
+	void rolledBackWriteDoesNotPinReadsToThePrimary() {
+
+		asClient("rolled-back");
+		new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+			todoRepository.save(new Todo("written"));
+			status.setRollbackOnly();
+		});
+
+		assertThat(todos()).containsExactly("replicated");
+	}
+
+	@Test
+	void routeIsRecordedOnTheRequestSpan() throws Exception {
+
+		mockMvc.perform(get("/todos/").header(ReadWriteRoutingDataSource.CLIENT_ID_HEADER, "span-reader"))
+				.andExpect(status().isOk());
+		mockMvc.perform(post("/todos/span-written").header(ReadWriteRoutingDataSource.CLIENT_ID_HEADER, "span-writer"))
+				.andExpect(status().isCreated());
+		mockMvc.perform(get("/todos/").header(ReadWriteRoutingDataSource.CLIENT_ID_HEADER, "span-writer"))
+				.andExpect(status().isOk());
+
+		ArgumentCaptor<ReadableSpan> spans = ArgumentCaptor.forClass(ReadableSpan.class);
+		verify(spanProcessor, atLeastOnce()).onEnd(spans.capture());
+		assertThat(spans.getAllValues())
+				.filteredOn(span -> span.getName().equals("getTodos") || span.getName().equals("addTodo"))
+				.extracting(span -> span.getName() + " " + span.getAttribute(ReadWriteRoutingDataSource.ROUTE))
+				.containsExactly("getTodos replica", "addTodo primary", "getTodos primary");
+	}
+
+	private List<String> todos() {
+
+		List<String> todos = new ArrayList<>();
+		todoRepository.findAll().forEach(todo -> todos.add(todo.getTodo()));
+		return todos;
+	}
+
+	private static void asClient(String clientId) {
+
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.addHeader(ReadWriteRoutingDataSource.CLIENT_ID_HEADER, clientId);
+		RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+	}
+
+}
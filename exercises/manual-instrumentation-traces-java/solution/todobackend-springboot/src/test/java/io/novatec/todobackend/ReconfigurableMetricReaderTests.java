@@ -0,0 +1,103 @@
+package io.novatec.todobackend;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.metrics.InstrumentType;
+import io.opentelemetry.sdk.metrics.SdkMeterProvider;
+import io.opentelemetry.sdk.metrics.data.AggregationTemporality;
+import io.opentelemetry.sdk.metrics.data.MetricData;
+import io.opentelemetry.sdk.metrics.export.MetricExporter;
+
+public class ReconfigurableMetricReaderTests {
+
+	final FailingExporter exporter = new FailingExporter();
+	final ReconfigurableMetricReader reader = new ReconfigurableMetricReader(exporter, Duration.ofMillis(20));
+	final SdkMeterProvider meterProvider = SdkMeterProvider.builder().registerMetricReader(reader).build();
+
+	ReconfigurableMetricReaderTests() {
+		meterProvider.get("test").counterBuilder("test.counter").build().add(1);
+	}
+
+	@AfterEach
+	void close() {
+		meterProvider.shutdown().join(5, TimeUnit.SECONDS);
+	}
+
+	@Test
+	void exportKeepsRunningAfterTheExporterThrew() throws Exception {
+
+		exporter.throwing = true;
+		for (int wait = 0; wait < 100 && exporter.calls.get() < 1; wait++)
+			Thread.sleep(10);
+		exporter.throwing = false;
+		int failed = exporter.calls.get();
+
+		for (int wait = 0; wait < 100 && exporter.exported.get() < 2; wait++)
+			Thread.sleep(10);
+
+		assertThat(failed).isPositive();
+		assertThat(exporter.exported.get()).isGreaterThanOrEqualTo(2);
+	}
+
+	@Test
+	void forceFlushFailsWhenTheExportFails() {
+
+		exporter.result = CompletableResultCode.ofFailure();
+		assertThat(reader.forceFlush().join(5, TimeUnit.SECONDS).isSuccess()).isFalse();
+
+		exporter.result = CompletableResultCode.ofSuccess();
+		assertThat(reader.forceFlush().join(5, TimeUnit.SECONDS).isSuccess()).isTrue();
+	}
+
+	@Test
+	void forceFlushFailsAfterShutdown() {
+
+		assertThat(reader.shutdown().join(5, TimeUnit.SECONDS).isSuccess()).isTrue();
+
+		assertThat(reader.forceFlush().isSuccess()).isFalse();
+		assertThat(reader.shutdown().isSuccess()).isTrue();
+	}
+
+	static class FailingExporter implements MetricExporter {
+
+		final AtomicInteger calls = new AtomicInteger();
+		final AtomicInteger exported = new AtomicInteger();
+		volatile boolean throwing;
+		volatile CompletableResultCode result = CompletableResultCode.ofSuccess();
+
+		@Override
+		public CompletableResultCode export(Collection<MetricData> metrics) {
+
+			calls.incrementAndGet();
+			if (throwing)
+				throw new IllegalStateException("exporter broken");
+			exported.incrementAndGet();
+			return result;
+		}
+
+		@Override
+		public AggregationTemporality getAggregationTemporality(InstrumentType instrumentType) {
+			return AggregationTemporality.CUMULATIVE;
+		}
+
+		@Override
+		public CompletableResultCode flush() {
+			return CompletableResultCode.ofSuccess();
+		}
+
+		@Override
+		public CompletableResultCode shutdown() {
+			return CompletableResultCode.ofSuccess();
+		}
+	}
+
+}
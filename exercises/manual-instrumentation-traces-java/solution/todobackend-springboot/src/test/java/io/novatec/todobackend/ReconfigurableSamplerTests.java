@@ -0,0 +1,80 @@
+package io.novatec.todobackend;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.trace.IdGenerator;
+import io.opentelemetry.sdk.trace.samplers.SamplingDecision;
+
+public class ReconfigurableSamplerTests {
+
+	@Test
+	void spanNamesWithARuleUseTheirOwnRatio() {
+
+		ReconfigurableSampler sampler = new ReconfigurableSampler(0, Map.of("addTodo", 1.0));
+
+		assertThat(decision(sampler, "addTodo")).isEqualTo(SamplingDecision.RECORD_AND_SAMPLE);
+		assertThat(decision(sampler, "removeTodo")).isEqualTo(SamplingDecision.DROP);
+	}
+
+	@Test
+	void updateReplacesRatioAndRules() {
+
+		ReconfigurableSampler sampler = new ReconfigurableSampler(0, Map.of("addTodo", 1.0));
+		sampler.update(1, Map.of("removeTodo", 0.0));
+
+		assertThat(decision(sampler, "addTodo")).isEqualTo(SamplingDecision.RECORD_AND_SAMPLE);
+		assertThat(decision(sampler, "removeTodo")).isEqualTo(SamplingDecision.DROP);
+		assertThat(sampler.getRatio()).isEqualTo(1);
+		assertThat(sampler.getRatiosBySpanName()).containsExactly(Map.entry("removeTodo", 0.0));
+		assertThat(sampler.getDescription()).isEqualTo("ReconfigurableSampler{ratio=1.0, rules={removeTodo=0.0}}");
+	}
+
+	@Test
+	void ratiosOutsideZeroToOneAreRejectedAndKeepTheCurrentRules() {
+
+		ReconfigurableSampler sampler = new ReconfigurableSampler(0.5, Map.of());
+
+		assertThatThrownBy(() -> sampler.update(1.5, Map.of())).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> sampler.update(0.5, Map.of("addTodo", -0.1)))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> sampler.update(Double.NaN, Map.of())).isInstanceOf(IllegalArgumentException.class);
+		assertThat(sampler.getRatio()).isEqualTo(0.5);
+		assertThat(sampler.getRatiosBySpanName()).isEmpty();
+	}
+
+	@Test
+	void rulesAreParsedInOrder() {
+
+		assertThat(ReconfigurableSampler.parseRules("addTodo=0.1, SELECT todo=0.01,,name=with=equals=1"))
+				.containsExactly(Map.entry("addTodo", 0.1), Map.entry("SELECT todo", 0.01),
+						Map.entry("name=with=equals", 1.0));
+		assertThat(ReconfigurableSampler.parseRules("")).isEmpty();
+	}
+
+	@Test
+	void malformedRulesAreRejected() {
+
+		assertThatThrownBy(() -> ReconfigurableSampler.parseRules("addTodo"))
+				.isInstanceOf(IllegalArgumentException.class).hasMessageContaining("'addTodo'");
+		assertThatThrownBy(() -> ReconfigurableSampler.parseRules("=0.5"))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> ReconfigurableSampler.parseRules("addTodo=often"))
+				.isInstanceOf(NumberFormatException.class);
+	}
+
+	private static SamplingDecision decision(ReconfigurableSampler sampler, String name) {
+
+		return sampler.shouldSample(Context.root(), IdGenerator.random().generateTraceId(), name, SpanKind.SERVER,
+				Attributes.empty(), List.of()).getDecision();
+	}
+
+}
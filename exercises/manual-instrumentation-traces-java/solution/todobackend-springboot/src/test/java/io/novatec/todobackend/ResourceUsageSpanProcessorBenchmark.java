@@ -0,0 +1,88 @@
+package io.novatec.todobackend;
+
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.metrics.SdkMeterProvider;
+import io.opentelemetry.sdk.trace.ReadWriteSpan;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+
+/**
+ * Measures what the CPU time and allocation sampling adds to a server span,
+ * when every span is measured as by default, with one in four, and on a
+ * virtual thread where it is skipped.
+ *
+ * Run with:
+ * mvn test-compile exec:java -Dexec.mainClass=io.novatec.todobackend.ResourceUsageSpanProcessorBenchmark -Dexec.classpathScope=test
+ */
+public class ResourceUsageSpanProcessorBenchmark {
+
+	static final int SPANS = 2_000_000;
+	static final int ROUNDS = 5;
+
+	static volatile Object sink;
+
+	public static void main(String[] args) throws Exception {
+
+		SdkMeterProvider meterProvider = SdkMeterProvider.builder().build();
+		Tracer plain = SdkTracerProvider.builder().addSpanProcessor(new ConsumingProcessor()).build().get("plain");
+		Tracer everySpan = measured(meterProvider, 1);
+		Tracer sampled = measured(meterProvider, 4);
+
+		System.out.printf("%-10s %14s %14s %14s%n", "thread", "plain ns/span", "measured ns/span", "overhead ns");
+		for (int round = 0; round < ROUNDS; round++) {
+			run("every", plain, everySpan);
+			run("1 in 4", plain, sampled);
+			Thread virtual = Thread.ofVirtual().start(() -> run("virtual", plain, everySpan));
+			virtual.join();
+		}
+	}
+
+	static Tracer measured(SdkMeterProvider meterProvider, int sampleEvery) {
+
+		return SdkTracerProvider.builder()
+				.addSpanProcessor(new ResourceUsageSpanProcessor(new ConsumingProcessor(), meterProvider.get("benchmark"),
+						sampleEvery))
+				.build().get("measured");
+	}
+
+	static void run(String thread, Tracer plain, Tracer measured) {
+
+		double plainNanos = spans(plain);
+		double measuredNanos = spans(measured);
+		System.out.printf("%-10s %14.0f %14.0f %14.0f%n", thread, plainNanos, measuredNanos, measuredNanos - plainNanos);
+	}
+
+	static double spans(Tracer tracer) {
+
+		long start = System.nanoTime();
+		for (int i = 0; i < SPANS; i++)
+			tracer.spanBuilder("request").setSpanKind(SpanKind.SERVER).startSpan().end();
+		return (System.nanoTime() - start) / (double) SPANS;
+	}
+
+	static class ConsumingProcessor implements SpanProcessor {
+
+		@Override
+		public void onStart(Context parentContext, ReadWriteSpan span) {
+		}
+
+		@Override
+		public boolean isStartRequired() {
+			return false;
+		}
+
+		@Override
+		public void onEnd(ReadableSpan span) {
+			sink = span;
+		}
+
+		@Override
+		public boolean isEndRequired() {
+			return true;
+		}
+	}
+
+}
@@ -0,0 +1,210 @@
+package io.novatec.todobackend;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.TraceFlags;
+import io.opentelemetry.api.trace.TraceState;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.metrics.SdkMeterProvider;
+import io.opentelemetry.sdk.metrics.data.LongPointData;
+import io.opentelemetry.sdk.testing.exporter.InMemoryMetricReader;
+import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import io.opentelemetry.semconv.HttpAttributes;
+
+public class SpanDropRulesTests {
+
+	final InMemorySpanExporter spans = InMemorySpanExporter.create();
+	final InMemoryMetricReader metricReader = InMemoryMetricReader.create();
+	final SdkMeterProvider meterProvider = SdkMeterProvider.builder().registerMetricReader(metricReader).build();
+	SdkTracerProvider tracerProvider;
+	SpanDropRules.DropProcessor processor;
+
+	@AfterEach
+	void close() {
+
+		if (tracerProvider != null)
+			tracerProvider.close();
+		meterProvider.close();
+	}
+
+	@Test
+	void parseReadsEveryRuleType() {
+
+		List<SpanDropRules.Rule> rules = SpanDropRules
+				.parse(" health = name:GET /health* ,,actuator=route:/actuator,h2=attribute:db.system=h2,"
+						+ "cached=attribute:cache.hit,fast=duration: 5ms");
+
+		assertThat(rules).extracting(SpanDropRules.Rule::name)
+				.containsExactly("health", "actuator", "h2", "cached", "fast");
+		assertThat(rules).extracting(SpanDropRules.Rule::type).containsExactly(SpanDropRules.Type.NAME,
+				SpanDropRules.Type.ROUTE, SpanDropRules.Type.ATTRIBUTE, SpanDropRules.Type.ATTRIBUTE,
+				SpanDropRules.Type.DURATION);
+		assertThat(rules).extracting(SpanDropRules.Rule::match)
+				.containsExactly("GET /health*", "/actuator", "db.system", "cache.hit", "5ms");
+		assertThat(rules).extracting(SpanDropRules.Rule::value).containsExactly(null, null, "h2", null, null);
+		assertThat(rules.get(4).nanos()).isEqualTo(5_000_000);
+	}
+
+	@Test
+	void parseOfAnEmptyStringHasNoRules() {
+
+		assertThat(SpanDropRules.parse("")).isEmpty();
+		assertThat(SpanDropRules.parse(" , ")).isEmpty();
+	}
+
+	@Test
+	void parseRejectsMalformedRules() {
+
+		assertThatThrownBy(() -> SpanDropRules.parse("route:/actuator"))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessage("Drop rule 'route:/actuator' is not rule=type:match");
+		assertThatThrownBy(() -> SpanDropRules.parse("=route:/actuator"))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessage("Drop rule '=route:/actuator' is not rule=type:match");
+		assertThatThrownBy(() -> SpanDropRules.parse("actuator=route"))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessage("Drop rule 'actuator=route' is not rule=type:match");
+		assertThatThrownBy(() -> SpanDropRules.parse("fast=duration:5s"))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessage("Drop rule 'fast=duration:5s' needs a duration in ms");
+		assertThatThrownBy(() -> SpanDropRules.parse("fast=duration:fivems"))
+				.isInstanceOf(NumberFormatException.class);
+		assertThatThrownBy(() -> SpanDropRules.parse("actuator=path:/actuator"))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessage("Drop rule 'actuator=path:/actuator' has type path, not name, route, attribute or duration");
+	}
+
+	@Test
+	void routeRulesMatchTheRequestUrlOfServerSpans() {
+
+		Tracer tracer = tracer("todos=route:/todos/");
+
+		// as the addTodo span sets it
+		tracer.spanBuilder("addTodo").setSpanKind(SpanKind.SERVER)
+				.setAttribute(HttpAttributes.HTTP_ROUTE, "http://localhost:8080/todos/shopping").startSpan().end();
+		Span late = tracer.spanBuilder("addTodo").setSpanKind(SpanKind.SERVER).startSpan();
+		late.setAttribute(HttpAttributes.HTTP_ROUTE, "/todos/cooking");
+		late.end();
+		tracer.spanBuilder("getTodos").setSpanKind(SpanKind.SERVER)
+				.setAttribute(HttpAttributes.HTTP_ROUTE, "http://localhost:8080/todos").startSpan().end();
+
+		assertThat(spans.getFinishedSpanItems()).extracting(span -> span.getName()).containsExactly("getTodos");
+		assertThat(dropped("todos")).isEqualTo(2);
+	}
+
+	@Test
+	void nameRulesDropTheChildrenOfAMatchedSpan() {
+
+		Tracer tracer = tracer("health=name:GET /health*");
+
+		Span parent = tracer.spanBuilder("GET /health/live").startSpan();
+		tracer.spanBuilder("child").setParent(Context.current().with(parent)).startSpan().end();
+		parent.end();
+		tracer.spanBuilder("GET /todos").startSpan().end();
+
+		assertThat(spans.getFinishedSpanItems()).extracting(span -> span.getName()).containsExactly("GET /todos");
+		assertThat(dropped("health")).isEqualTo(1);
+	}
+
+	@Test
+	void durationRulesOnlyDropLocalRootsWithoutChildren() {
+
+		Tracer tracer = tracer("fast=duration:60000ms");
+
+		tracer.spanBuilder("root").startSpan().end();
+
+		Span parent = tracer.spanBuilder("parent").startSpan();
+		tracer.spanBuilder("child").setParent(Context.current().with(parent)).startSpan().end();
+		parent.end();
+
+		SpanContext remote = SpanContext.createFromRemoteParent("0af7651916cd43dd8448eb211c80319c",
+				"b7ad6b7169203331", TraceFlags.getSampled(), TraceState.getDefault());
+		tracer.spanBuilder("remote-child").setParent(Context.current().with(Span.wrap(remote))).startSpan().end();
+
+		tracer.spanBuilder("failed").startSpan().setStatus(StatusCode.ERROR).end();
+
+		assertThat(spans.getFinishedSpanItems()).extracting(span -> span.getName())
+				.containsExactly("child", "parent", "failed");
+		assertThat(dropped("fast")).isEqualTo(2);
+	}
+
+	@Test
+	void childrenStartedAfterTheirRootEndedLeaveNothingBehind() {
+
+		Tracer tracer = tracer("fast=duration:60000ms");
+
+		Span root = tracer.spanBuilder("root").startSpan();
+		root.end();
+		Span child = tracer.spanBuilder("child").setParent(Context.current().with(root)).startSpan();
+		tracer.spanBuilder("grandchild").setParent(Context.current().with(child)).startSpan().end();
+		child.end();
+
+		assertThat(spans.getFinishedSpanItems()).extracting(span -> span.getName())
+				.containsExactly("grandchild", "child");
+		assertThat(processor.openRoots).isEmpty();
+	}
+
+	@Test
+	void rootsThatNeverEndAreOnlyTrackedUpToTheLimit() {
+
+		Tracer tracer = tracer("fast=duration:60000ms");
+
+		for (int i = 0; i < SpanDropRules.MAX_OPEN_ROOTS + 10; i++)
+			tracer.spanBuilder("abandoned").startSpan();
+		assertThat(processor.openRoots).hasSize(SpanDropRules.MAX_OPEN_ROOTS);
+
+		// an untracked root might have children, so it is kept
+		tracer.spanBuilder("untracked").startSpan().end();
+
+		assertThat(spans.getFinishedSpanItems()).extracting(span -> span.getName()).containsExactly("untracked");
+		assertThat(processor.openRoots).hasSize(SpanDropRules.MAX_OPEN_ROOTS);
+	}
+
+	@Test
+	void durationRulesKeepSlowSpans() {
+
+		Tracer tracer = tracer("fast=duration:0ms");
+
+		tracer.spanBuilder("root").startSpan().end();
+
+		assertThat(spans.getFinishedSpanItems()).extracting(span -> span.getName()).containsExactly("root");
+	}
+
+	private Tracer tracer(String rules) {
+
+		SpanDropRules spanDropRules = new SpanDropRules(SpanDropRules.parse(rules),
+				meterProvider.get(SpanDropRules.class.getName()));
+		processor = (SpanDropRules.DropProcessor) spanDropRules.processor(SimpleSpanProcessor.create(spans));
+		tracerProvider = SdkTracerProvider.builder()
+				.setSampler(spanDropRules.sampler(Sampler.parentBased(Sampler.alwaysOn())))
+				.addSpanProcessor(processor)
+				.build();
+		return tracerProvider.get("test");
+	}
+
+	long dropped(String rule) {
+
+		return metricReader.collectAllMetrics().stream()
+				.filter(metric -> metric.getName().equals("todobackend.spans.dropped"))
+				.flatMap(metric -> metric.getLongSumData().getPoints().stream())
+				.filter(point -> point.getAttributes().equals(Attributes.of(SpanDropRules.RULE, rule)))
+				.mapToLong(LongPointData::getValue)
+				.sum();
+	}
+
+}
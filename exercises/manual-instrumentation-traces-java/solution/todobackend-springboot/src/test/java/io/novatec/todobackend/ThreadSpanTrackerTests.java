@@ -0,0 +1,60 @@
+package io.novatec.todobackend;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+
+public class ThreadSpanTrackerTests {
+
+	final ThreadSpanTracker tracker = new ThreadSpanTracker();
+	final SdkTracerProvider tracerProvider = SdkTracerProvider.builder().addSpanProcessor(tracker).build();
+	final Tracer tracer = tracerProvider.get("test");
+
+	@AfterEach
+	void close() {
+		tracerProvider.close();
+	}
+
+	@Test
+	void spanIsFoundByThreadAndTime() throws Exception {
+
+		long before = System.currentTimeMillis();
+		Span span = tracer.spanBuilder("request").startSpan();
+		Thread.sleep(5);
+		long during = System.currentTimeMillis();
+		Thread.sleep(5);
+		span.end();
+		Thread.sleep(5);
+
+		long threadId = Thread.currentThread().threadId();
+		assertThat(tracker.spanAt(threadId, during)).isEqualTo(span.getSpanContext());
+		assertThat(tracker.spanAt(threadId, before - 1)).isNull();
+		assertThat(tracker.spanAt(threadId, System.currentTimeMillis())).isNull();
+	}
+
+	@Test
+	void historiesOfDeadThreadsAreSweptOnceTooOldForLateEvents() throws Exception {
+
+		tracer.spanBuilder("main").startSpan().end();
+		for (int i = 0; i < 10; i++) {
+			Thread thread = new Thread(() -> tracer.spanBuilder("worker").startSpan().end());
+			thread.start();
+			thread.join();
+		}
+		assertThat(tracker.trackedThreads()).isEqualTo(11);
+
+		// late events of the dead threads can still be matched within the retention time
+		long now = System.currentTimeMillis();
+		tracker.sweep(now + ThreadSpanTracker.RETENTION_MILLIS / 2);
+		assertThat(tracker.trackedThreads()).isEqualTo(11);
+
+		tracker.sweep(now + ThreadSpanTracker.RETENTION_MILLIS * 2);
+		assertThat(tracker.trackedThreads()).isEqualTo(1);
+	}
+
+}
@@ -0,0 +1,144 @@
+package io.novatec.todobackend;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.metrics.SdkMeterProvider;
+import io.opentelemetry.sdk.metrics.data.LongPointData;
+import io.opentelemetry.sdk.testing.exporter.InMemoryMetricReader;
+
+public class TodoChangeFeedTests {
+
+	final InMemoryMetricReader metricReader = InMemoryMetricReader.create();
+	final OpenTelemetrySdk openTelemetry = OpenTelemetrySdk.builder()
+			.setMeterProvider(SdkMeterProvider.builder().registerMetricReader(metricReader).build())
+			.build();
+
+	// the emitters are not attached to a response, the events they send are only counted
+	final List<CountingEmitter> emitters = Collections.synchronizedList(new ArrayList<>());
+	final CountDownLatch releaseSlowSubscriber = new CountDownLatch(1);
+	final CountDownLatch slowSubscriberBlocked = new CountDownLatch(1);
+	boolean nextSubscriberSlow;
+
+	final TodoChangeFeed feed = new TodoChangeFeed(openTelemetry, 2, 3600) {
+
+		@Override
+		SseEmitter newEmitter() {
+
+			CountingEmitter emitter = new CountingEmitter(nextSubscriberSlow);
+			emitters.add(emitter);
+			return emitter;
+		}
+	};
+
+	@AfterEach
+	void shutdown() {
+
+		releaseSlowSubscriber.countDown();
+		feed.shutdown();
+		openTelemetry.close();
+	}
+
+	@Test
+	void concurrentSubscribersDoNotExceedTheLimit() throws Exception {
+
+		feed.maxSubscribers = 8;
+		feed.bufferSize = 4;
+		CountDownLatch start = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(32);
+		List<Future<SseEmitter>> subscribes = new ArrayList<>();
+		for (int i = 0; i < 32; i++) {
+			subscribes.add(executor.submit(() -> {
+				start.await();
+				return feed.subscribe();
+			}));
+		}
+		start.countDown();
+
+		int subscribed = 0;
+		for (Future<SseEmitter> subscribe : subscribes)
+			subscribed += subscribe.get() != null ? 1 : 0;
+		executor.shutdown();
+
+		assertThat(subscribed).isEqualTo(8);
+		assertThat(dropped("subscriber_limit")).isEqualTo(24);
+	}
+
+	@Test
+	void slowSubscriberDropsEventsWithoutHoldingBackOthers() throws Exception {
+
+		feed.maxSubscribers = 8;
+		feed.bufferSize = 4;
+		nextSubscriberSlow = true;
+		feed.subscribe();
+		nextSubscriberSlow = false;
+		feed.subscribe();
+		assertThat(slowSubscriberBlocked.await(5, TimeUnit.SECONDS)).isTrue();
+
+		// published at the pace the fast subscriber takes them, after its ready event
+		CountingEmitter fast = emitters.get(1);
+		for (int i = 0; i < 10; i++) {
+			feed.publish("added", "todo-" + i);
+			for (int wait = 0; wait < 100 && fast.sent.get() < i + 2; wait++)
+				Thread.sleep(10);
+		}
+
+		assertThat(fast.sent.get()).isEqualTo(11);
+		// the slow subscriber is stuck on its ready event, its buffer takes four changes
+		assertThat(dropped("backpressure")).isEqualTo(6);
+	}
+
+	long dropped(String reason) {
+
+		return metricReader.collectAllMetrics().stream()
+				.filter(metric -> metric.getName().equals("todobackend.changes.dropped"))
+				.flatMap(metric -> metric.getLongSumData().getPoints().stream())
+				.filter(point -> point.getAttributes().equals(Attributes.of(AttributeKey.stringKey("reason"), reason)))
+				.mapToLong(LongPointData::getValue)
+				.sum();
+	}
+
+	class CountingEmitter extends SseEmitter {
+
+		final AtomicInteger sent = new AtomicInteger();
+		final boolean slow;
+
+		CountingEmitter(boolean slow) {
+
+			super(0L);
+			this.slow = slow;
+		}
+
+		@Override
+		public void send(SseEventBuilder builder) throws IOException {
+
+			if (slow) {
+				slowSubscriberBlocked.countDown();
+				try {
+					releaseSlowSubscriber.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			sent.incrementAndGet();
+		}
+	}
+
+}
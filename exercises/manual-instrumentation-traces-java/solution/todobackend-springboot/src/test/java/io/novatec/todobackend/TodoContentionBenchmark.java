@@ -0,0 +1,77 @@
+package io.novatec.todobackend;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Measures the throughput of 64 writers adding and removing the same todo
+ * concurrently through the idempotent insert and delete statements.
+ *
+ * Run with:
+ * mvn test-compile exec:java -Dexec.mainClass=io.novatec.todobackend.TodoContentionBenchmark -Dexec.classpathScope=test
+ */
+public class TodoContentionBenchmark {
+
+	static final int WRITERS = 64;
+	static final int OPERATIONS_PER_WRITER = 200;
+	static final String KEY = "contended";
+
+	public static void main(String[] args) throws Exception {
+
+		ConfigurableApplicationContext context = SpringApplication.run(TodobackendApplication.class,
+				"--server.port=0", "--todobackend.grpc.port=-1", "--spring.datasource.hikari.maximum-pool-size=16",
+				"--todobackend.jdbc.slow-query.threshold-ms=60000", "--logging.level.root=WARN");
+		try {
+			TodoRepository todoRepository = context.getBean(TodoRepository.class);
+			System.out.printf("%8s %12s %10s %10s %10s%n", "writers", "operations", "ops/s", "inserted", "deleted");
+			for (int round = 0; round < 3; round++)
+				run(todoRepository);
+		} finally {
+			context.close();
+		}
+	}
+
+	static void run(TodoRepository todoRepository) throws Exception {
+
+		AtomicLong inserted = new AtomicLong();
+		AtomicLong deleted = new AtomicLong();
+		CountDownLatch start = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(WRITERS);
+
+		List<Future<?>> writers = new ArrayList<>();
+		for (int w = 0; w < WRITERS; w++) {
+			int writer = w;
+			writers.add(executor.submit(() -> {
+				start.await();
+				for (int i = 0; i < OPERATIONS_PER_WRITER; i++) {
+					if ((writer + i) % 2 == 0)
+						inserted.addAndGet(todoRepository.insertIfAbsent(KEY));
+					else
+						deleted.addAndGet(todoRepository.deleteIfPresent(KEY));
+				}
+				return null;
+			}));
+		}
+
+		long startNanos = System.nanoTime();
+		start.countDown();
+		for (Future<?> writer : writers)
+			writer.get();
+		long elapsedNanos = System.nanoTime() - startNanos;
+		executor.shutdown();
+		todoRepository.deleteIfPresent(KEY);
+
+		int operations = WRITERS * OPERATIONS_PER_WRITER;
+		System.out.printf("%8d %12d %10.0f %10d %10d%n", WRITERS, operations, operations / (elapsedNanos / 1e9),
+				inserted.get(), deleted.get());
+	}
+
+}
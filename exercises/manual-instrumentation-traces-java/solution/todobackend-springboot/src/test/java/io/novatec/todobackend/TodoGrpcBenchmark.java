@@ -0,0 +1,115 @@
+package io.novatec.todobackend;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import io.grpc.Channel;
+import io.novatec.todobackend.grpc.ListTodosRequest;
+import io.novatec.todobackend.grpc.TodoMessage;
+import io.novatec.todobackend.grpc.TodoServiceGrpc;
+
+/**
+ * Compares throughput and latency of the REST and the gRPC todo API over
+ * loopback, both going through the same repository and instrumentation.
+ *
+ * Run with:
+ * mvn test-compile exec:java -Dexec.mainClass=io.novatec.todobackend.TodoGrpcBenchmark -Dexec.classpathScope=test
+ */
+public class TodoGrpcBenchmark {
+
+	static final int CALLS = 2_000;
+	static final int LIST_SIZE = 1_000;
+	static final int THREADS = 8;
+
+	interface Call {
+		void run(int i) throws Exception;
+	}
+
+	public static void main(String[] args) throws Exception {
+
+		ConfigurableApplicationContext context = SpringApplication.run(TodobackendApplication.class,
+				"--server.port=0", "--todobackend.grpc.port=0", "--spring.jpa.show-sql=false",
+				"--logging.level.root=WARN");
+		try {
+			int httpPort = ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+			int grpcPort = context.getBean(TodoGrpcServer.class).getPort();
+
+			HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+			Channel channel = context.getBean(TodoGrpcChannels.class).forAddress("localhost", grpcPort);
+			TodoServiceGrpc.TodoServiceBlockingStub grpc = TodoServiceGrpc.newBlockingStub(channel);
+
+			Call restAdd = i -> http.send(HttpRequest.newBuilder(URI.create("http://localhost:" + httpPort + "/todos/rest-" + i))
+					.POST(HttpRequest.BodyPublishers.noBody()).build(), HttpResponse.BodyHandlers.discarding());
+			Call grpcAdd = i -> grpc.add(TodoMessage.newBuilder().setTodo("grpc-" + i).build());
+			Call restList = i -> http.send(HttpRequest.newBuilder(URI.create("http://localhost:" + httpPort + "/todos/")).build(),
+					HttpResponse.BodyHandlers.ofByteArray());
+			Call grpcList = i -> grpc.list(ListTodosRequest.getDefaultInstance()).forEachRemaining(todo -> {
+			});
+
+			System.out.printf("%-12s %8s %12s %10s %10s%n", "call", "threads", "calls/s", "p50 ms", "p99 ms");
+			for (int threads : new int[] { 1, THREADS }) {
+				run("REST add", threads, restAdd, CALLS);
+				run("gRPC add", threads, grpcAdd, CALLS);
+			}
+
+			TodoRepository repository = context.getBean(TodoRepository.class);
+			repository.deleteAll();
+			List<Todo> todos = new ArrayList<>();
+			for (int i = 0; i < LIST_SIZE; i++)
+				todos.add(new Todo("todo-" + i));
+			repository.saveAll(todos);
+
+			for (int threads : new int[] { 1, THREADS }) {
+				run("REST list", threads, restList, CALLS / 10);
+				run("gRPC list", threads, grpcList, CALLS / 10);
+			}
+		} finally {
+			context.close();
+		}
+	}
+
+	static void run(String name, int threads, Call call, int calls) throws Exception {
+
+		for (int i = 0; i < calls / 10; i++)
+			call.run(i + 1_000_000 * threads);
+
+		long[] latencies = new long[calls];
+		AtomicInteger next = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		long start = System.nanoTime();
+		List<Future<?>> futures = new ArrayList<>();
+		for (int t = 0; t < threads; t++) {
+			futures.add(executor.submit(() -> {
+				int i;
+				while ((i = next.getAndIncrement()) < calls) {
+					long callStart = System.nanoTime();
+					call.run(i + 10_000_000 * threads);
+					latencies[i] = System.nanoTime() - callStart;
+				}
+				return null;
+			}));
+		}
+		for (Future<?> future : futures)
+			future.get();
+		long elapsed = System.nanoTime() - start;
+		executor.shutdown();
+
+		Arrays.sort(latencies);
+		System.out.printf("%-12s %8d %12.0f %10.3f %10.3f%n", name, threads, calls / (elapsed / 1e9),
+				latencies[calls / 2] / 1e6, latencies[calls * 99 / 100] / 1e6);
+	}
+
+}
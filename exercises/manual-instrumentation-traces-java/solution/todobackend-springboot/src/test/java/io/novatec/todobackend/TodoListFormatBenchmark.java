@@ -0,0 +1,129 @@
+package io.novatec.todobackend;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+
+/**
+ * Compares payload size, serialization CPU time and end-to-end latency of the
+ * todo list in JSON, CBOR and Smile, with and without gzip.
+ *
+ * Run with:
+ * mvn test-compile exec:java -Dexec.mainClass=io.novatec.todobackend.TodoListFormatBenchmark -Dexec.classpathScope=test
+ */
+public class TodoListFormatBenchmark {
+
+	static final int[] SIZES = { 1_000, 10_000, 100_000 };
+	static final String[] FORMATS = { "application/json", "application/cbor", "application/x-jackson-smile" };
+
+	public static void main(String[] args) throws Exception {
+
+		serialization();
+		endToEnd();
+	}
+
+	static void serialization() throws IOException {
+
+		ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		ObjectMapper[] mappers = { new ObjectMapper(), new CBORMapper(), new SmileMapper() };
+
+		System.out.printf("%-30s %8s %10s %10s %14s%n", "format", "todos", "bytes", "gzip", "cpu us/op");
+		for (int size : SIZES) {
+			List<String> todos = todos(size);
+			for (int f = 0; f < FORMATS.length; f++) {
+				ObjectMapper mapper = mappers[f];
+				int iterations = Math.max(20, 2_000_000 / size);
+				for (int i = 0; i < iterations; i++)
+					mapper.writeValueAsBytes(todos);
+
+				long cpuStart = threadBean.getCurrentThreadCpuTime();
+				byte[] payload = null;
+				for (int i = 0; i < iterations; i++)
+					payload = mapper.writeValueAsBytes(todos);
+				long cpuPerOp = (threadBean.getCurrentThreadCpuTime() - cpuStart) / iterations;
+
+				System.out.printf("%-30s %8d %10d %10d %14.1f%n", FORMATS[f], size, payload.length, gzip(payload).length,
+						cpuPerOp / 1000.0);
+			}
+		}
+	}
+
+	static void endToEnd() throws Exception {
+
+		ConfigurableApplicationContext context = SpringApplication.run(TodobackendApplication.class,
+				"--server.port=0", "--spring.jpa.show-sql=false", "--logging.level.root=WARN");
+		try {
+			int port = ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+			TodoRepository repository = context.getBean(TodoRepository.class);
+			HttpClient client = HttpClient.newHttpClient();
+			URI uri = URI.create("http://localhost:" + port + "/todos/");
+
+			System.out.printf("%n%-30s %8s %6s %10s %12s%n", "format", "todos", "gzip", "wire bytes", "median ms");
+			int stored = 0;
+			for (int size : SIZES) {
+				List<Todo> batch = new ArrayList<>();
+				for (; stored < size; stored++)
+					batch.add(new Todo(String.format("todo-%06d", stored)));
+				repository.saveAll(batch);
+
+				for (String format : FORMATS) {
+					for (boolean compressed : new boolean[] { false, true }) {
+						HttpRequest.Builder request = HttpRequest.newBuilder(uri).header("Accept", format);
+						if (compressed)
+							request.header("Accept-Encoding", "gzip");
+
+						int iterations = size >= 100_000 ? 20 : 50;
+						long[] latencies = new long[iterations];
+						int bytes = 0;
+						for (int i = -5; i < iterations; i++) {
+							long start = System.nanoTime();
+							bytes = client.send(request.build(), HttpResponse.BodyHandlers.ofByteArray()).body().length;
+							if (i >= 0)
+								latencies[i] = System.nanoTime() - start;
+						}
+						Arrays.sort(latencies);
+						System.out.printf("%-30s %8d %6s %10d %12.2f%n", format, size, compressed, bytes,
+								latencies[iterations / 2] / 1_000_000.0);
+					}
+				}
+			}
+		} finally {
+			context.close();
+		}
+	}
+
+	static List<String> todos(int size) {
+
+		List<String> todos = new ArrayList<>(size);
+		for (int i = 0; i < size; i++)
+			todos.add(String.format("todo-%06d", i));
+		return todos;
+	}
+
+	static byte[] gzip(byte[] payload) throws IOException {
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+			gzip.write(payload);
+		}
+		return out.toByteArray();
+	}
+
+}
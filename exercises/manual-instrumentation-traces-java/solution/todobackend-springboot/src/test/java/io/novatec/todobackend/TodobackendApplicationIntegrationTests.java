@@ -1,12 +1,83 @@
 package io.novatec.todobackend;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
 
 @SpringBootTest
+@AutoConfigureMockMvc
 public class TodobackendApplicationIntegrationTests {
 
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    TodoRepository todoRepository;
+
     @Test
     void contextLoads() {
     }
-}
\ No newline at end of file
+
+    @Test
+    void readsAndDeletesStopOnceTheCallersBudgetIsUsedUp() throws Exception {
+
+        todoRepository.insertIfAbsent("expired");
+
+        mockMvc.perform(delete("/todos/expired").header("baggage", Deadline.BUDGET_KEY + "=-1"))
+                .andExpect(status().isGatewayTimeout());
+        mockMvc.perform(get("/todos/").header("baggage", Deadline.BUDGET_KEY + "=-1"))
+                .andExpect(status().isGatewayTimeout());
+        assertThat(todoRepository.existsById("expired")).isTrue();
+
+        mockMvc.perform(delete("/todos/expired").header("baggage", Deadline.BUDGET_KEY + "=5000"))
+                .andExpect(status().isOk());
+        assertThat(todoRepository.existsById("expired")).isFalse();
+    }
+
+    // TodoContentionBenchmark measures the throughput of the same race with more writers
+    @Test
+    void concurrentWritersOnOneKeyKeepInsertsAndDeletesBalanced() throws Exception {
+
+        AtomicLong inserted = new AtomicLong();
+        AtomicLong deleted = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        List<Future<?>> writers = new ArrayList<>();
+        for (int w = 0; w < 8; w++) {
+            int writer = w;
+            writers.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < 25; i++) {
+                    if ((writer + i) % 2 == 0)
+                        inserted.addAndGet(todoRepository.insertIfAbsent("contended"));
+                    else
+                        deleted.addAndGet(todoRepository.deleteIfPresent("contended"));
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> writer : writers)
+            writer.get();
+        executor.shutdown();
+
+        assertThat(inserted.get() - deleted.get()).isEqualTo(todoRepository.existsById("contended") ? 1 : 0);
+        todoRepository.deleteIfPresent("contended");
+    }
+}